@@ -0,0 +1,51 @@
+package com.tienda.microservicio.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tienda.microservicio.model.Boleta;
+
+// Serialización JSON de la respuesta de POST /api/compras (Boleta con sus detalles)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BoletaJsonBenchmark {
+
+    @Param({ "1", "10", "100" })
+    private int lineas;
+
+    private ObjectMapper objectMapper;
+
+    private Boleta boleta;
+
+    @Setup
+    public void setUp() {
+        // Misma configuración de fechas que aplica Spring Boot por defecto
+        objectMapper = new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        boleta = BoletasDePrueba.boleta(lineas);
+    }
+
+    @Benchmark
+    public byte[] serializarBoleta() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(boleta);
+    }
+}
@@ -0,0 +1,35 @@
+package com.tienda.microservicio.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.tienda.microservicio.model.Boleta;
+import com.tienda.microservicio.model.DetalleBoleta;
+import com.tienda.microservicio.model.Producto;
+
+// Datos de prueba compartidos por los benchmarks
+public final class BoletasDePrueba {
+
+    private BoletasDePrueba() {
+    }
+
+    public static Boleta boleta(int lineas) {
+        Boleta boleta = new Boleta();
+        boleta.setId(123456L);
+        boleta.setFecha(LocalDateTime.of(2025, 6, 1, 12, 30, 0));
+
+        List<DetalleBoleta> detalles = new ArrayList<>(lineas);
+        double total = 0;
+        for (int i = 1; i <= lineas; i++) {
+            Producto producto = new Producto((long) i, "Producto de prueba número " + i, 990.0 + i * 17.5);
+            DetalleBoleta detalle = new DetalleBoleta((long) i, boleta, producto, 1 + i % 5, producto.getPrecio());
+            detalles.add(detalle);
+            total += detalle.getPrecioUnitario() * detalle.getCantidad();
+        }
+
+        boleta.setDetalles(detalles);
+        boleta.setTotal(total);
+        return boleta;
+    }
+}
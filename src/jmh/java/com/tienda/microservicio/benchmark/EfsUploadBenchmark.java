@@ -0,0 +1,85 @@
+package com.tienda.microservicio.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.tienda.microservicio.service.EfsFileWriter;
+import com.tienda.microservicio.service.EfsPathResolver;
+
+// Subidas concurrentes a EFS (temporal + rename) según la política de fsync. Para medir
+// sobre el montaje real: -Defs.benchmark.dir=/app/efs/benchmark; hilos con -t
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class EfsUploadBenchmark {
+
+    @Param({ "NONE", "FILE", "FILE_AND_DIRECTORY" })
+    private EfsFileWriter.PoliticaFsync politica;
+
+    @Param({ "65536", "1048576" })
+    private int tamano;
+
+    private Path directorio;
+
+    private EfsFileWriter fileWriter;
+
+    private byte[] contenido;
+
+    @Setup
+    public void setUp() throws IOException {
+        directorio = Files.createDirectories(Paths.get(
+                System.getProperty("efs.benchmark.dir", System.getProperty("java.io.tmpdir") + "/efs-benchmark")));
+
+        EfsPathResolver pathResolver = new EfsPathResolver();
+        ReflectionTestUtils.setField(pathResolver, "efsMountPath", directorio.toString());
+        ReflectionTestUtils.invokeMethod(pathResolver, "inicializar");
+
+        fileWriter = new EfsFileWriter(pathResolver);
+        ReflectionTestUtils.setField(fileWriter, "politica", politica);
+
+        contenido = new byte[tamano];
+        ThreadLocalRandom.current().nextBytes(contenido);
+    }
+
+    // Sin borrar entre iteraciones el directorio crecería y la medida empeoraría sola
+    @TearDown(Level.Iteration)
+    public void limpiar() throws IOException {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            for (Path archivo : (Iterable<Path>) archivos::iterator) {
+                Files.deleteIfExists(archivo);
+            }
+        }
+    }
+
+    @Benchmark
+    public void subir() throws IOException {
+        fileWriter.escribir(new ByteArrayInputStream(contenido), directorio.resolve(UUID.randomUUID() + ".bin"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.tienda.microservicio.benchmark;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.tienda.microservicio.model.Boleta;
+import com.tienda.microservicio.service.PDFService;
+
+// Renderizado de PDFs de boletas según el número de líneas y la compresión
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfRenderBenchmark {
+
+    @Param({ "1", "10", "100" })
+    private int lineas;
+
+    @Param({ "-1", "1" })
+    private int nivelCompresion;
+
+    @Param({ "false", "true" })
+    private boolean compresionCompleta;
+
+    private PDFService pdfService;
+
+    private Boleta boleta;
+
+    @Setup
+    public void setUp() {
+        pdfService = new PDFService();
+        ReflectionTestUtils.setField(pdfService, "nivelCompresion", nivelCompresion);
+        ReflectionTestUtils.setField(pdfService, "compresionCompleta", compresionCompleta);
+        boleta = BoletasDePrueba.boleta(lineas);
+    }
+
+    @Benchmark
+    public byte[] renderizarEnBytes() {
+        return pdfService.generarBoletaPDF(boleta);
+    }
+
+    @Benchmark
+    public void renderizarEnStream() {
+        pdfService.generarBoletaPDF(boleta, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,89 @@
+package com.tienda.microservicio.service;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.tienda.microservicio.model.Boleta;
+import com.tienda.microservicio.model.DetalleBoleta;
+import com.tienda.microservicio.model.Producto;
+import com.tienda.microservicio.model.ProductoCompra;
+
+// Cotización del carrito en CompraServiceImpl con el catálogo ya en memoria
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CotizarCarritoBenchmark {
+
+    @Param({ "1", "40", "500" })
+    private int lineas;
+
+    // Porcentaje de líneas que repiten un producto ya presente en el carrito
+    @Param({ "0", "50" })
+    private int porcentajeRepetidas;
+
+    private CompraServiceImpl compraService;
+
+    private List<ProductoCompra> carrito;
+
+    @Setup
+    public void setUp() {
+        Map<Long, Producto> catalogo = new HashMap<>();
+        for (long id = 1; id <= lineas; id++) {
+            catalogo.put(id, new Producto(id, "Producto " + id, 100.0 + id));
+        }
+
+        // Catálogo servido desde el mapa, equivalente a una caché caliente. stubOnly: el mock
+        // no registra las invocaciones, que crecerían sin límite durante la medición
+        ProductoService productoService = mock(ProductoService.class, withSettings().stubOnly());
+        when(productoService.getProductsByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            Map<Long, Producto> resultado = new HashMap<>(ids.size() * 2);
+            for (Long id : ids) {
+                Producto producto = catalogo.get(id);
+                if (producto != null) {
+                    resultado.put(id, producto);
+                }
+            }
+            return resultado;
+        });
+
+        compraService = new CompraServiceImpl();
+        ReflectionTestUtils.setField(compraService, "productoService", productoService);
+
+        carrito = new ArrayList<>(lineas);
+        int distintos = Math.max(1, lineas * (100 - porcentajeRepetidas) / 100);
+        for (int i = 0; i < lineas; i++) {
+            carrito.add(new ProductoCompra((long) (i % distintos) + 1, 1 + i % 3));
+        }
+    }
+
+    @Benchmark
+    public List<DetalleBoleta> cotizarCarrito() {
+        return compraService.cotizarCarrito(carrito, new Boleta());
+    }
+}
@@ -0,0 +1,56 @@
+package com.tienda.microservicio.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.tienda.microservicio.util.RecursosRespuesta;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Executor propio para los cuerpos en streaming (PDF, ZIP, NDJSON, descargas
+ * de S3 y EFS). El de Spring por defecto tiene 8 hilos y cola sin límite,
+ * compartido con cualquier otra tarea asíncrona; aquí el tamaño y la cola
+ * son configurables y, con la cola llena, la petición se rechaza en lugar de
+ * esperar sin límite
+ */
+@Configuration
+public class AsyncWebConfig implements WebMvcConfigurer {
+
+    @Value("${streaming.hilos:32}")
+    private int hilos = 32;
+
+    @Value("${streaming.max-hilos:64}")
+    private int maxHilos = 64;
+
+    @Value("${streaming.cola:100}")
+    private int cola = 100;
+
+    private ThreadPoolTaskExecutor executor;
+
+    @PostConstruct
+    void inicializarExecutor() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(Math.max(hilos, maxHilos));
+        executor.setQueueCapacity(cola);
+        executor.setThreadNamePrefix("streaming-");
+        executor.setDaemon(true);
+        executor.initialize();
+    }
+
+    @PreDestroy
+    void detenerExecutor() {
+        executor.shutdown();
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(executor);
+        configurer.registerCallableInterceptors(new RecursosRespuesta());
+    }
+}
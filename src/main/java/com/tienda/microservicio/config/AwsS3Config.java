@@ -1,13 +1,21 @@
 package com.tienda.microservicio.config;
 
+import java.time.Duration;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.awscore.retry.AwsRetryStrategy;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 @Configuration
 public class AwsS3Config {
@@ -24,16 +32,102 @@ public class AwsS3Config {
     @Value("${spring.cloud.aws.s3.region}")
     private String region;
 
+    // Cliente síncrono (Apache): descargas, PUT simples, HEAD, listados y lotes. Cada descarga
+    // en streaming retiene una conexión hasta enviar el último byte, así que el pool por defecto
+    // (50) limita las descargas simultáneas
+    @Value("${aws.s3.sync.max-conexiones:128}")
+    private int maxConexionesSync = 128;
+
+    @Value("${aws.s3.sync.timeout-adquisicion:10s}")
+    private Duration timeoutAdquisicionSync = Duration.ofSeconds(10);
+
+    @Value("${aws.s3.sync.timeout-conexion:5s}")
+    private Duration timeoutConexionSync = Duration.ofSeconds(5);
+
+    @Value("${aws.s3.sync.timeout-lectura:30s}")
+    private Duration timeoutLecturaSync = Duration.ofSeconds(30);
+
+    // Cliente asíncrono (Netty): tamaño del pool, timeouts y reintentos
+    @Value("${aws.s3.async.max-conexiones:64}")
+    private int maxConexiones = 64;
+
+    @Value("${aws.s3.async.max-esperando-conexion:1000}")
+    private int maxEsperandoConexion = 1000;
+
+    @Value("${aws.s3.async.timeout-adquisicion:10s}")
+    private Duration timeoutAdquisicion = Duration.ofSeconds(10);
+
+    @Value("${aws.s3.async.timeout-conexion:5s}")
+    private Duration timeoutConexion = Duration.ofSeconds(5);
+
+    @Value("${aws.s3.async.timeout-lectura:30s}")
+    private Duration timeoutLectura = Duration.ofSeconds(30);
+
+    @Value("${aws.s3.async.timeout-escritura:30s}")
+    private Duration timeoutEscritura = Duration.ofSeconds(30);
+
+    @Value("${aws.s3.async.timeout-llamada:5m}")
+    private Duration timeoutLlamada = Duration.ofMinutes(5);
+
+    @Value("${aws.s3.async.max-intentos:3}")
+    private int maxIntentos = 3;
+
     @Bean
-    public S3Client s3Client() {
+    public S3Client s3Client(MeterRegistry meterRegistry) {
+        S3PoolMetrics poolMetrics = new S3PoolMetrics(meterRegistry, "s3.sync");
+        return S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentialsProvider())
+                .httpClientBuilder(ApacheHttpClient.builder()
+                        .maxConnections(maxConexionesSync)
+                        .connectionAcquisitionTimeout(timeoutAdquisicionSync)
+                        .connectionTimeout(timeoutConexionSync)
+                        .socketTimeout(timeoutLecturaSync))
+                .overrideConfiguration(override -> override
+                        .addMetricPublisher(poolMetrics)
+                        .addExecutionInterceptor(poolMetrics))
+                .build();
+    }
+
+    // Las llamadas devuelven CompletableFuture: las partes de una subida no ocupan un hilo cada una
+    @Bean
+    public S3AsyncClient s3AsyncClient(MeterRegistry meterRegistry) {
+        S3PoolMetrics s3PoolMetrics = new S3PoolMetrics(meterRegistry, "s3.async");
+        return S3AsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentialsProvider())
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConexiones)
+                        .maxPendingConnectionAcquires(maxEsperandoConexion)
+                        .connectionAcquisitionTimeout(timeoutAdquisicion)
+                        .connectionTimeout(timeoutConexion)
+                        .readTimeout(timeoutLectura)
+                        .writeTimeout(timeoutEscritura))
+                .overrideConfiguration(override -> override
+                        .apiCallTimeout(timeoutLlamada)
+                        .retryStrategy(AwsRetryStrategy.standardRetryStrategy().toBuilder()
+                                .maxAttempts(maxIntentos)
+                                .build())
+                        .addMetricPublisher(s3PoolMetrics)
+                        .addExecutionInterceptor(s3PoolMetrics))
+                .build();
+    }
+
+    // Firma URLs localmente, sin llamadas a S3
+    @Bean
+    public S3Presigner s3Presigner() {
+        return S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentialsProvider())
+                .build();
+    }
+
+    private StaticCredentialsProvider credentialsProvider() {
         AwsSessionCredentials awsCredentials = AwsSessionCredentials.create(
                 accessKey,
                 secretKey,
                 sessionToken);
 
-        return S3Client.builder()
-                .region(Region.of(region))
-                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
-                .build();
+        return StaticCredentialsProvider.create(awsCredentials);
     }
 }
\ No newline at end of file
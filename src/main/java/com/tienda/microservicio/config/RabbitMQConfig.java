@@ -0,0 +1,40 @@
+package com.tienda.microservicio.config;
+
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RabbitMQConfig {
+
+    @Value("${boleta.pdf.cola:boletas.pdf}")
+    private String colaBoletasPdf;
+
+    // Cola de eventos "boleta creada" que consume el pre-renderizado de PDFs; los mensajes
+    // rechazados tras agotar los reintentos pasan a la cola .dlq
+    @Bean
+    public Queue colaBoletasPdf() {
+        return QueueBuilder.durable(colaBoletasPdf)
+                .deadLetterExchange("")
+                .deadLetterRoutingKey(colaBoletasPdfFallidas())
+                .build();
+    }
+
+    @Bean
+    public Queue colaBoletasPdfDlq() {
+        return QueueBuilder.durable(colaBoletasPdfFallidas()).build();
+    }
+
+    private String colaBoletasPdfFallidas() {
+        return colaBoletasPdf + ".dlq";
+    }
+
+    @Bean
+    public MessageConverter jsonMessageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+}
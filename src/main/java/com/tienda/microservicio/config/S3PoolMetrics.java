@@ -0,0 +1,85 @@
+package com.tienda.microservicio.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+
+/**
+ * Métricas del pool de conexiones de un cliente S3 (prefijo s3.sync o
+ * s3.async). El SDK publica el estado del pool al terminar cada llamada; las
+ * peticiones en vuelo se cuentan con un interceptor al empezar y terminar
+ * cada ejecución
+ */
+public class S3PoolMetrics implements MetricPublisher, ExecutionInterceptor {
+
+    private final AtomicInteger maxConexiones = new AtomicInteger();
+
+    private final AtomicInteger conexionesEnUso = new AtomicInteger();
+
+    private final AtomicInteger esperandoConexion = new AtomicInteger();
+
+    private final AtomicInteger peticionesEnVuelo = new AtomicInteger();
+
+    public S3PoolMetrics(MeterRegistry meterRegistry, String prefijo) {
+        Gauge.builder(prefijo + ".pool.max", maxConexiones, AtomicInteger::get)
+                .description("Conexiones máximas del pool del cliente S3")
+                .register(meterRegistry);
+        Gauge.builder(prefijo + ".pool.leased", conexionesEnUso, AtomicInteger::get)
+                .description("Conexiones del pool en uso")
+                .register(meterRegistry);
+        Gauge.builder(prefijo + ".pool.pending", esperandoConexion, AtomicInteger::get)
+                .description("Peticiones esperando una conexión libre")
+                .register(meterRegistry);
+        Gauge.builder(prefijo + ".pool.saturation", this, S3PoolMetrics::saturacion)
+                .description("Fracción del pool en uso (1 = saturado)")
+                .register(meterRegistry);
+        Gauge.builder(prefijo + ".requests.in-flight", peticionesEnVuelo, AtomicInteger::get)
+                .description("Llamadas al cliente S3 en curso")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void publish(MetricCollection metricCollection) {
+        recorrer(metricCollection);
+    }
+
+    @Override
+    public void close() {
+        // Las métricas viven en el MeterRegistry; no hay nada que liberar
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        peticionesEnVuelo.incrementAndGet();
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        peticionesEnVuelo.decrementAndGet();
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        peticionesEnVuelo.decrementAndGet();
+    }
+
+    private double saturacion() {
+        int max = maxConexiones.get();
+        return max == 0 ? 0 : (double) conexionesEnUso.get() / max;
+    }
+
+    // Los valores del pool vienen en la colección de cada intento HTTP, anidada bajo la llamada
+    private void recorrer(MetricCollection coleccion) {
+        coleccion.metricValues(HttpMetric.MAX_CONCURRENCY).forEach(maxConexiones::set);
+        coleccion.metricValues(HttpMetric.LEASED_CONCURRENCY).forEach(conexionesEnUso::set);
+        coleccion.metricValues(HttpMetric.PENDING_CONCURRENCY_ACQUIRES).forEach(esperandoConexion::set);
+        coleccion.children().forEach(this::recorrer);
+    }
+}
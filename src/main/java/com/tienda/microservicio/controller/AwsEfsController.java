@@ -1,28 +1,40 @@
 package com.tienda.microservicio.controller;
 
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.tienda.microservicio.dto.EfsFileInfo;
+import com.tienda.microservicio.dto.EfsMigrationStatus;
 import com.tienda.microservicio.dto.RenameResponse;
 import com.tienda.microservicio.dto.UploadResponse;
+import com.tienda.microservicio.health.EfsHealthIndicator;
 import com.tienda.microservicio.service.AwsEfsService;
+import com.tienda.microservicio.service.EfsLayoutMigrator;
+import com.tienda.microservicio.util.HttpRangeSupport;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 
 @RestController
@@ -32,6 +44,16 @@ public class AwsEfsController {
 
     private final AwsEfsService awsEfsService;
 
+    // Atributos con los que Tomcat envía un archivo con sendfile al terminar la petición
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final EfsHealthIndicator efsHealthIndicator;
+
+    private final EfsLayoutMigrator layoutMigrator;
+
 
      // Endpoint para subir un archivo a EFS
 
@@ -138,35 +160,76 @@ public class AwsEfsController {
      // GET /api/efs/download/{fileName}
      
     @GetMapping("/download/{fileName}")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable String fileName) {
+    public ResponseEntity<StreamingResponseBody> downloadFile(
+            @PathVariable String fileName,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            HttpServletRequest request) {
         try {
-            // Verificar si el archivo existe
-            if (!awsEfsService.fileExists(fileName)) {
-                return ResponseEntity.notFound().build();
-            }
-
-            // Descargar archivo
-            byte[] fileContent = awsEfsService.downloadFile(fileName);
-
-            // Obtener información del archivo para headers
-            EfsFileInfo fileInfo = awsEfsService.getFileInfo(fileName);
+            // Stat del archivo en disco, no del índice: la longitud y el final de sendfile
+            // deben ser los del archivo que se va a enviar
+            EfsFileInfo fileInfo = awsEfsService.getFileInfoActual(fileName);
+            String etag = awsEfsService.etag(fileInfo);
+            long longitud = fileInfo.getSize();
 
             // Configurar headers de respuesta
             HttpHeaders headers = new HttpHeaders();
 
             // Establecer content type si está disponible
-            if (fileInfo.getContentType() != null) {
-                headers.setContentType(MediaType.parseMediaType(fileInfo.getContentType()));
-            } else {
-                headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            }
+            MediaType contentType = fileInfo.getContentType() != null
+                    ? MediaType.parseMediaType(fileInfo.getContentType())
+                    : MediaType.APPLICATION_OCTET_STREAM;
+            headers.setContentType(contentType);
 
             headers.setContentDispositionFormData("attachment", fileInfo.getFileName());
-            headers.setContentLength(fileContent.length);
+            headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+            headers.setETag(etag);
+            headers.setLastModified(fileInfo.getLastModified());
+
+            List<HttpRange> rangos = HttpRangeSupport.rangosSolicitados(range, ifRange, etag,
+                    fileInfo.getLastModified());
+
+            if (rangos.isEmpty()) {
+                headers.setContentLength(longitud);
+                StreamingResponseBody body = cuerpo(request, fileInfo, 0, longitud - 1);
+                return ResponseEntity.ok()
+                        .headers(headers)
+                        .body(body);
+            }
+
+            List<HttpRangeSupport.Region> regiones;
+            try {
+                regiones = HttpRangeSupport.regiones(rangos, longitud);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, HttpRangeSupport.contentRangeNoSatisfacible(longitud))
+                        .build();
+            }
 
-            return ResponseEntity.ok()
+            // Demasiados rangos distintos: se responde el archivo completo
+            if (regiones.isEmpty()) {
+                headers.setContentLength(longitud);
+                return ResponseEntity.ok()
+                        .headers(headers)
+                        .body(cuerpo(request, fileInfo, 0, longitud - 1));
+            }
+
+            StreamingResponseBody body;
+            if (regiones.size() == 1) {
+                HttpRangeSupport.Region region = regiones.get(0);
+                headers.set(HttpHeaders.CONTENT_RANGE, HttpRangeSupport.contentRange(region, longitud));
+                headers.setContentLength(region.longitud());
+                body = cuerpo(request, fileInfo, region.inicio(), region.fin());
+            } else {
+                String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+                headers.setContentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary));
+                body = out -> HttpRangeSupport.escribirMultipart(out, boundary, contentType.toString(), longitud,
+                        regiones, (inicio, fin, parte) -> awsEfsService.transferRange(fileName, inicio, fin, parte));
+            }
+
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
                     .headers(headers)
-                    .body(fileContent);
+                    .body(body);
 
         } catch (RuntimeException e) {
             if (e.getMessage().contains("no encontrado")) {
@@ -255,6 +318,26 @@ public class AwsEfsController {
         }
     }
 
+
+     // Lanza la migración en segundo plano del layout plano al fragmentado
+     // POST /api/efs/layout/migrate
+
+    @PostMapping("/layout/migrate")
+    public ResponseEntity<EfsMigrationStatus> migrateLayout() {
+        if (layoutMigrator.iniciar()) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(layoutMigrator.estado());
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(layoutMigrator.estado());
+    }
+
+     // Progreso de la última migración de layout
+     // GET /api/efs/layout/migrate
+
+    @GetMapping("/layout/migrate")
+    public ResponseEntity<EfsMigrationStatus> migrationStatus() {
+        return ResponseEntity.ok(layoutMigrator.estado());
+    }
+
     
     // Endpoint de salud para verificar accesibilidad de EFS
      // GET /api/efs/health
@@ -263,27 +346,33 @@ public class AwsEfsController {
     public ResponseEntity<Map<String, Object>> healthCheck() {
         Map<String, Object> response = new HashMap<>();
 
-        try {
-            boolean accessible = awsEfsService.isEfsAccessible();
+        // Último resultado de la sonda periódica; no toca EFS en cada llamada
+        Health health = efsHealthIndicator.health();
+        boolean accessible = Status.UP.equals(health.getStatus());
 
-            if (accessible) {
-                response.put("status", "UP");
-                response.put("service", "AWS EFS");
-                response.put("message", "EFS es accesible y funcional");
-                return ResponseEntity.ok(response);
-            } else {
-                response.put("status", "DOWN");
-                response.put("service", "AWS EFS");
-                response.put("message", "EFS no está accesible o no se puede escribir");
-                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
-            }
+        response.put("status", health.getStatus().getCode());
+        response.put("service", "AWS EFS");
+        response.put("details", health.getDetails());
 
-        } catch (Exception e) {
-            response.put("status", "DOWN");
-            response.put("service", "AWS EFS");
-            response.put("message", "Error al verificar EFS: " + e.getMessage());
+        if (accessible) {
+            response.put("message", "EFS es accesible y funcional");
+            return ResponseEntity.ok(response);
+        }
+
+        response.put("message", "EFS no está accesible o no se puede escribir");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    }
 
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    // Con sendfile disponible (conector NIO sin TLS) el cuerpo lo escribe Tomcat desde el
+    // kernel y no se devuelve ninguno; si no, se copia con transferTo desde el servicio
+    private StreamingResponseBody cuerpo(HttpServletRequest request, EfsFileInfo fileInfo, long inicio, long fin) {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, Paths.get(fileInfo.getPath()).toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, inicio);
+            // El final es exclusivo
+            request.setAttribute(SENDFILE_END, fin + 1);
+            return null;
         }
+        return out -> awsEfsService.transferRange(fileInfo.getKey(), inicio, fin, out);
     }
 }
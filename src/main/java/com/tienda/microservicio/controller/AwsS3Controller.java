@@ -1,26 +1,46 @@
 package com.tienda.microservicio.controller;
 
+import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.tienda.microservicio.dto.BatchDeleteResponse;
+import com.tienda.microservicio.dto.BatchUploadResponse;
+import com.tienda.microservicio.dto.PresignedUpload;
+import com.tienda.microservicio.dto.S3FileDownload;
 import com.tienda.microservicio.dto.S3FileInfo;
+import com.tienda.microservicio.dto.S3FilePage;
 import com.tienda.microservicio.dto.UploadResponse;
+import com.tienda.microservicio.health.S3HealthIndicator;
 import com.tienda.microservicio.service.AwsS3Service;
+import com.tienda.microservicio.service.S3BatchService;
+import com.tienda.microservicio.service.S3PresignService;
+import com.tienda.microservicio.util.HttpRangeSupport;
+import com.tienda.microservicio.util.RecursosRespuesta;
 
 import lombok.RequiredArgsConstructor;
 
@@ -31,6 +51,21 @@ public class AwsS3Controller {
 
     private final AwsS3Service awsS3Service;
 
+    private final S3PresignService presignService;
+
+    private final S3HealthIndicator s3HealthIndicator;
+
+    private final S3BatchService batchService;
+
+    @Value("${aws.s3.batch.max-archivos:20}")
+    private int maxArchivosLote = 20;
+
+    @Value("${aws.s3.batch.max-claves:10000}")
+    private int maxClavesLote = 10000;
+
+    @Value("${spring.servlet.multipart.max-file-size:50MB}")
+    private DataSize tamanoMaximo = DataSize.ofMegabytes(50);
+
     /**
      * Endpoint para subir un archivo
      * POST /api/s3/upload
@@ -46,10 +81,10 @@ public class AwsS3Controller {
             return ResponseEntity.badRequest().body(errorResponse);
         }
 
-        // Validar tamaño del archivo (Máximo 50MB)
-        if (file.getSize() > 50 * 1024 * 1024) {
+        // Validar tamaño del archivo (mismo límite que el multipart y la subida en lote)
+        if (file.getSize() > tamanoMaximo.toBytes()) {
             UploadResponse errorResponse = new UploadResponse(
-                    "El archivo es demasiado grande. Máximo 50MB permitido",
+                    "El archivo es demasiado grande. Máximo " + tamanoMaximo.toMegabytes() + "MB permitido",
                     null, null, 0, false);
             return ResponseEntity.badRequest().body(errorResponse);
         }
@@ -71,6 +106,95 @@ public class AwsS3Controller {
         }
     }
 
+    /**
+     * Endpoint para subir varios archivos en una petición, en paralelo
+     * POST /api/s3/upload/batch
+     */
+    @PostMapping("/upload/batch")
+    public ResponseEntity<BatchUploadResponse> uploadFiles(@RequestParam("files") List<MultipartFile> files) {
+        if (files.isEmpty() || files.size() > maxArchivosLote) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        BatchUploadResponse response = batchService.uploadFiles(files);
+        return response.isSuccess() ? ResponseEntity.ok(response)
+                : ResponseEntity.status(HttpStatus.MULTI_STATUS).body(response);
+    }
+
+    /**
+     * Endpoint para obtener una URL prefirmada de subida directa a S3
+     * POST /api/s3/upload/presign?fileName=&contentType=&size=
+     */
+    @PostMapping("/upload/presign")
+    public ResponseEntity<PresignedUpload> presignUpload(
+            @RequestParam String fileName,
+            @RequestParam(required = false) String contentType,
+            @RequestParam long size) {
+        if (!presignService.isSubidaHabilitada()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            return ResponseEntity.ok(presignService.presignUpload(fileName, contentType, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint para obtener una URL prefirmada que sobrescribe un archivo existente
+     * PUT /api/s3/files/{fileName}/presign?contentType=&size=
+     */
+    @PutMapping("/files/{fileName}/presign")
+    public ResponseEntity<PresignedUpload> presignUpdate(
+            @PathVariable String fileName,
+            @RequestParam(required = false) String contentType,
+            @RequestParam long size) {
+        if (!presignService.isSubidaHabilitada()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            // Verificar si el archivo existe
+            if (!awsS3Service.fileExists(fileName)) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(presignService.presignUpdate(fileName, contentType, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint para confirmar una subida directa una vez el cliente terminó el PUT
+     * POST /api/s3/files/{fileName}/confirm?uploadId=
+     */
+    @PostMapping("/files/{fileName}/confirm")
+    public ResponseEntity<UploadResponse> confirmUpload(
+            @PathVariable String fileName,
+            @RequestParam String uploadId) {
+        if (!presignService.isSubidaHabilitada()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            return ResponseEntity.ok(presignService.confirmUpload(fileName, uploadId));
+        } catch (S3PresignService.SubidaNoEncontradaException e) {
+            UploadResponse errorResponse = new UploadResponse(e.getMessage(), fileName, null, 0, false);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        } catch (IllegalArgumentException e) {
+            UploadResponse errorResponse = new UploadResponse(e.getMessage(), fileName, null, 0, false);
+            return ResponseEntity.badRequest().body(errorResponse);
+        } catch (RuntimeException e) {
+            UploadResponse errorResponse = new UploadResponse(e.getMessage(), fileName, null, 0, false);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
     /**
      * Endpoint para actualizar/sobrescribir un archivo existente
      * PUT /api/s3/files/{fileName}
@@ -88,10 +212,10 @@ public class AwsS3Controller {
             return ResponseEntity.badRequest().body(errorResponse);
         }
 
-        // Validar tamaño del archivo (Máximo 50MB)
-        if (file.getSize() > 50 * 1024 * 1024) {
+        // Validar tamaño del archivo (mismo límite que el multipart y la subida en lote)
+        if (file.getSize() > tamanoMaximo.toBytes()) {
             UploadResponse errorResponse = new UploadResponse(
-                    "El archivo es demasiado grande. Máximo 50MB permitido",
+                    "El archivo es demasiado grande. Máximo " + tamanoMaximo.toMegabytes() + "MB permitido",
                     null, null, 0, false);
             return ResponseEntity.badRequest().body(errorResponse);
         }
@@ -136,36 +260,81 @@ public class AwsS3Controller {
         }
     }
 
+    /**
+     * Endpoint para listar archivos por páginas
+     * GET /api/s3/files/pagina?prefix=&delimiter=&maxKeys=&continuationToken=
+     */
+    @GetMapping("/files/pagina")
+    public ResponseEntity<S3FilePage> listFilesPage(
+            @RequestParam(required = false) String prefix,
+            @RequestParam(required = false) String delimiter,
+            @RequestParam(required = false) Integer maxKeys,
+            @RequestParam(required = false) String continuationToken) {
+        try {
+            S3FilePage page = awsS3Service.listFilesPage(prefix, delimiter, maxKeys, continuationToken);
+            return ResponseEntity.ok(page);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint para exportar el listado completo en NDJSON, página a página
+     * GET /api/s3/files/export?prefix=
+     */
+    @GetMapping("/files/export")
+    public ResponseEntity<StreamingResponseBody> exportFiles(@RequestParam(required = false) String prefix) {
+        StreamingResponseBody body = out -> awsS3Service.exportFiles(prefix, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     /**
      * Endpoint para descargar un archivo
      * GET /api/s3/download/{fileName}
      */
     @GetMapping("/download/{fileName}")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable String fileName) {
+    public ResponseEntity<StreamingResponseBody> downloadFile(
+            @PathVariable String fileName,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
         try {
-            // Verificar si el archivo existe
-            if (!awsS3Service.fileExists(fileName)) {
-                return ResponseEntity.notFound().build();
+            // Modo directo: el cliente descarga de S3 (Range incluido) con una URL prefirmada
+            if (presignService.isDescargaHabilitada()) {
+                if (!awsS3Service.fileExists(fileName)) {
+                    return ResponseEntity.notFound().build();
+                }
+                return ResponseEntity.status(HttpStatus.FOUND)
+                        .location(URI.create(presignService.presignDownload(fileName)))
+                        .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                        .build();
             }
 
-            // Descargar archivo
-            byte[] fileContent = awsS3Service.downloadFile(fileName);
-
-            // Obtener información del archivo para headers
-            S3FileInfo fileInfo = awsS3Service.getFileInfo(fileName);
+            List<HttpRange> rangos = HttpRangeSupport.rangosSolicitados(range, null, null, null);
+            if (rangos.size() > 1) {
+                return descargaMultiRango(fileName, rangos, ifRange);
+            }
 
-            // Configurar headers de respuesta
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentDispositionFormData("attachment", fileInfo.getFileName());
-            headers.setContentLength(fileContent.length);
+            // Un único GET: si no existe S3 responde NoSuchKey y los headers vienen en la respuesta.
+            // Con un solo rango se delega en S3, que valida If-Range con If-Match
+            S3FileDownload download;
+            if (rangos.isEmpty()) {
+                download = awsS3Service.openDownload(fileName);
+            } else {
+                try {
+                    download = awsS3Service.openRangeDownload(fileName, HttpRange.toString(rangos), ifRange);
+                } catch (AwsS3Service.ArchivoModificadoException e) {
+                    download = awsS3Service.openDownload(fileName);
+                }
+            }
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(fileContent);
+            return respuestaDescarga(download);
 
+        } catch (AwsS3Service.RangoNoSatisfacibleException e) {
+            return rangoNoSatisfacible(fileName);
         } catch (RuntimeException e) {
-            if (e.getMessage().contains("no encontrado")) {
+            if (e.getMessage() != null && e.getMessage().contains("no encontrado")) {
                 return ResponseEntity.notFound().build();
             }
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -174,6 +343,95 @@ public class AwsS3Controller {
         }
     }
 
+    // S3 no admite varios rangos en un GET: se pide cada uno por separado
+    // validando con el ETag leído para que todas las partes sean de la misma versión.
+    // Los rangos solapados o contiguos se agrupan y, con demasiados, se responde completo
+    private ResponseEntity<StreamingResponseBody> descargaMultiRango(String fileName, List<HttpRange> rangos,
+            String ifRange) {
+        S3FileDownload info = awsS3Service.headForDownload(fileName);
+
+        if (ifRange != null && !HttpRangeSupport.ifRangeCoincide(ifRange, info.getETag(), info.getLastModified())) {
+            return respuestaDescarga(awsS3Service.openDownload(fileName));
+        }
+
+        long longitud = info.getContentLength();
+        List<HttpRangeSupport.Region> regiones;
+        try {
+            regiones = HttpRangeSupport.regiones(rangos, longitud);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, HttpRangeSupport.contentRangeNoSatisfacible(longitud))
+                    .build();
+        }
+
+        if (regiones.isEmpty()) {
+            return respuestaDescarga(awsS3Service.openDownload(fileName));
+        }
+        if (regiones.size() == 1) {
+            HttpRangeSupport.Region region = regiones.get(0);
+            return respuestaDescarga(awsS3Service.openRangeDownload(fileName,
+                    "bytes=" + region.inicio() + "-" + region.fin(), info.getETag()));
+        }
+
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        HttpHeaders headers = headersDescarga(info);
+        headers.setContentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary));
+
+        StreamingResponseBody body = out -> HttpRangeSupport.escribirMultipart(out, boundary,
+                MediaType.APPLICATION_OCTET_STREAM_VALUE, longitud, regiones,
+                (inicio, fin, parte) -> awsS3Service.transferTo(
+                        awsS3Service.openRangeDownload(fileName, "bytes=" + inicio + "-" + fin, info.getETag()),
+                        parte));
+
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).body(body);
+    }
+
+    // 200 con el objeto completo o 206 si la descarga trae Content-Range
+    private ResponseEntity<StreamingResponseBody> respuestaDescarga(S3FileDownload download) {
+        HttpHeaders headers = headersDescarga(download);
+        headers.setContentLength(download.getContentLength());
+
+        StreamingResponseBody body = RecursosRespuesta.liberarSiNoSeEjecuta(
+                out -> awsS3Service.transferTo(download, out), () -> awsS3Service.abortar(download));
+
+        if (download.getContentRange() != null) {
+            headers.set(HttpHeaders.CONTENT_RANGE, download.getContentRange());
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .headers(headers)
+                    .body(body);
+        }
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+
+    // El 416 de S3 no trae la longitud, que la RFC pide en Content-Range: bytes */longitud
+    private ResponseEntity<StreamingResponseBody> rangoNoSatisfacible(String fileName) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        try {
+            long longitud = awsS3Service.headForDownload(fileName).getContentLength();
+            respuesta.header(HttpHeaders.CONTENT_RANGE, HttpRangeSupport.contentRangeNoSatisfacible(longitud));
+        } catch (RuntimeException e) {
+            // Sin longitud se responde el 416 igualmente, solo sin Content-Range
+        }
+        return respuesta.build();
+    }
+
+    private HttpHeaders headersDescarga(S3FileDownload download) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", download.getFileName());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (download.getETag() != null) {
+            headers.setETag(download.getETag());
+        }
+        if (download.getLastModified() != null) {
+            headers.setLastModified(download.getLastModified());
+        }
+        return headers;
+    }
+
     /**
      * Endpoint para eliminar un archivo
      * DELETE /api/s3/files/{fileName}
@@ -211,6 +469,21 @@ public class AwsS3Controller {
         }
     }
 
+    /**
+     * Endpoint para eliminar varios archivos con DeleteObjects
+     * POST /api/s3/files/batch-delete  (cuerpo: lista JSON de claves)
+     */
+    @PostMapping("/files/batch-delete")
+    public ResponseEntity<BatchDeleteResponse> deleteFiles(@RequestBody List<String> fileNames) {
+        if (fileNames.isEmpty() || fileNames.size() > maxClavesLote) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        BatchDeleteResponse response = batchService.deleteFiles(fileNames);
+        return response.isSuccess() ? ResponseEntity.ok(response)
+                : ResponseEntity.status(HttpStatus.MULTI_STATUS).body(response);
+    }
+
     /**
      * Endpoint para obtener información de un archivo específico
      * GET /api/s3/files/{fileName}/info
@@ -253,27 +526,19 @@ public class AwsS3Controller {
 
     /**
      * Endpoint de salud para verificar conectividad con S3
-     * GET /api/s3/health
+     * GET /api/s3/health (último resultado de la sonda HeadBucket en segundo plano)
      */
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> healthCheck() {
         Map<String, Object> response = new HashMap<>();
+        Health health = s3HealthIndicator.health();
+        boolean up = Status.UP.equals(health.getStatus());
 
-        try {
-            // Intentar listar archivos como test de conectividad
-            awsS3Service.listFiles();
-
-            response.put("status", "UP");
-            response.put("service", "AWS S3");
-            response.put("message", "Conexión exitosa con S3");
+        response.put("status", health.getStatus().getCode());
+        response.put("service", "AWS S3");
+        response.put("message", up ? "Conexión exitosa con S3" : "Error de conexión con S3");
+        response.put("details", health.getDetails());
 
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            response.put("status", "DOWN");
-            response.put("service", "AWS S3");
-            response.put("message", "Error de conexión con S3: " + e.getMessage());
-
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
-        }
+        return up ? ResponseEntity.ok(response) : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
     }
 }
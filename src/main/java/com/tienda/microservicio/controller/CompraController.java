@@ -1,8 +1,14 @@
 package com.tienda.microservicio.controller;
 
+import java.security.Principal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -11,55 +17,146 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.tienda.microservicio.model.Boleta;
 import com.tienda.microservicio.model.ProductoCompra;
+import com.tienda.microservicio.service.BoletaExportService;
+import com.tienda.microservicio.service.BoletaPdfService;
 import com.tienda.microservicio.service.CompraService;
+import com.tienda.microservicio.service.IdempotenciaCompraStore;
 
 @RestController
 @RequestMapping("/api/compras")
 public class CompraController {
 
+    // Una boleta emitida no cambia: el cliente puede guardar el PDF indefinidamente
+    private static final CacheControl CACHE_PDF = CacheControl.maxAge(365, TimeUnit.DAYS)
+            .cachePrivate()
+            .immutable();
+
     @Autowired
     private CompraService compraService;
 
+    @Autowired
+    private BoletaPdfService boletaPdfService;
+
+    @Autowired
+    private BoletaExportService boletaExportService;
+
+    @Autowired
+    private IdempotenciaCompraStore idempotenciaStore;
+
+    // Con Idempotency-Key los reintentos devuelven la boleta original sin repetir la compra
     @PostMapping
-    public ResponseEntity<Boleta> realizarCompra(@RequestBody List<ProductoCompra> carrito) {
-        Boleta boleta = compraService.procesarCompra(carrito);
-        return ResponseEntity.ok(boleta);
+    public ResponseEntity<Boleta> realizarCompra(
+            @RequestBody List<ProductoCompra> carrito,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            Principal principal) {
+
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            Boleta boleta = compraService.procesarCompra(carrito);
+            return ResponseEntity.ok(boleta);
+        }
+
+        // La clave es propia de cada usuario
+        String clave = (principal != null ? principal.getName() : "") + ":" + idempotencyKey;
+        try {
+            Boleta boleta = idempotenciaStore.ejecutar(clave, IdempotenciaCompraStore.huella(carrito),
+                    () -> compraService.procesarCompra(carrito));
+            return ResponseEntity.ok(boleta);
+        } catch (IdempotenciaCompraStore.CompraEnCursoException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IdempotenciaCompraStore.ClaveReutilizadaException e) {
+            return ResponseEntity.unprocessableEntity().build();
+        }
     }
 
     @GetMapping("/{boletaId}/pdf")
-    public ResponseEntity<byte[]> descargarBoletaPDF(@PathVariable Long boletaId) {
-        try {
-            byte[] pdfBytes = compraService.generarPDFBoleta(boletaId);
+    public ResponseEntity<StreamingResponseBody> descargarBoletaPDF(@PathVariable Long boletaId, WebRequest request) {
+        return respuestaPdf(boletaId, MediaType.APPLICATION_PDF, request);
+    }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.add("Content-Disposition", "attachment; filename=\"boleta_" + boletaId + ".pdf\"");
-            headers.setContentLength(pdfBytes.length);
+    @GetMapping("/{boletaId}/pdf/download")
+    public ResponseEntity<StreamingResponseBody> forzarDescargaBoletaPDF(@PathVariable Long boletaId, WebRequest request) {
+        return respuestaPdf(boletaId, MediaType.APPLICATION_OCTET_STREAM, request);
+    }
 
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
-        } catch (Exception e) {
+    // Ambos endpoints comparten la misma copia renderizada y el mismo ETag
+    private ResponseEntity<StreamingResponseBody> respuestaPdf(Long boletaId, MediaType mediaType, WebRequest request) {
+        // Antes del 304: un ETag que coincide no prueba que la boleta exista
+        if (!boletaPdfService.existe(boletaId)) {
             return ResponseEntity.notFound().build();
         }
-    }
 
-    @GetMapping("/{boletaId}/pdf/download")
-    public ResponseEntity<byte[]> forzarDescargaBoletaPDF(@PathVariable Long boletaId) {
-        try {
-            byte[] pdfBytes = compraService.generarPDFBoleta(boletaId);
+        String etag = boletaPdfService.etag(boletaId);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CACHE_PDF).build();
+        }
 
+        try {
             HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            headers.setContentType(mediaType);
             headers.add("Content-Disposition", "attachment; filename=\"boleta_" + boletaId + ".pdf\"");
-            headers.setContentLength(pdfBytes.length);
+            headers.setETag(etag);
+            headers.setCacheControl(CACHE_PDF);
+
+            StreamingResponseBody body;
+            Optional<byte[]> almacenado = boletaPdfService.isCacheHabilitado()
+                    ? Optional.of(compraService.generarPDFBoleta(boletaId))
+                    : boletaPdfService.obtenerAlmacenado(boletaId);
 
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
+            if (almacenado.isPresent()) {
+                byte[] pdfBytes = almacenado.get();
+                headers.setContentLength(pdfBytes.length);
+                body = out -> out.write(pdfBytes);
+            } else {
+                // Sin caché: se renderiza directamente sobre la respuesta
+                Boleta boleta = boletaPdfService.cargarBoleta(boletaId);
+                body = out -> boletaPdfService.escribirPdf(boleta, out);
+            }
+
+            return new ResponseEntity<>(body, headers, HttpStatus.OK);
         } catch (Exception e) {
             return ResponseEntity.notFound().build();
         }
     }
-}
\ No newline at end of file
+
+    // Exportación masiva por rango de fechas
+    // GET /api/compras/boletas/zip?desde=2025-01-01T00:00:00&hasta=2025-01-31T23:59:59
+    @GetMapping("/boletas/zip")
+    public ResponseEntity<StreamingResponseBody> exportarBoletasPorFecha(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta) {
+        return respuestaZip(null, desde, hasta);
+    }
+
+    // Exportación masiva de una lista de boletas
+    // POST /api/compras/boletas/zip  [1, 2, 3]
+    @PostMapping("/boletas/zip")
+    public ResponseEntity<StreamingResponseBody> exportarBoletas(@RequestBody List<Long> boletaIds) {
+        return respuestaZip(boletaIds, null, null);
+    }
+
+    private ResponseEntity<StreamingResponseBody> respuestaZip(List<Long> boletaIds, LocalDateTime desde,
+            LocalDateTime hasta) {
+        List<Long> ids;
+        try {
+            ids = boletaExportService.resolverIds(boletaIds, desde, hasta);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.add("Content-Disposition", "attachment; filename=\"boletas.zip\"");
+
+        StreamingResponseBody body = out -> boletaExportService.exportarZip(ids, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+}
@@ -2,13 +2,17 @@ package com.tienda.microservicio.controller;
 
 import java.util.List;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.tienda.microservicio.dto.ProductoPage;
 import com.tienda.microservicio.model.Producto;
 import com.tienda.microservicio.service.ProductoService;
 
@@ -27,6 +31,23 @@ public class ProductoController {
         return ResponseEntity.ok(productoService.getAllProducts());
     }
 
+    // GET /api/productos/pagina?cursor={ultimoId}&size={n}
+    @GetMapping("/pagina")
+    public ResponseEntity<ProductoPage> getProductsPage(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(productoService.getProductsPage(cursor, size));
+    }
+
+    // GET /api/productos/export: catálogo completo en NDJSON, en memoria constante
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts() {
+        StreamingResponseBody body = productoService::exportProducts;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @PostMapping
     public ResponseEntity<Producto> createProduct(@RequestBody Producto producto) {
         return ResponseEntity.ok(productoService.createProduct(producto));
@@ -0,0 +1,17 @@
+package com.tienda.microservicio.dto;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchDeleteResponse {
+    private List<String> deleted;
+    private Map<String, String> errors; // clave -> mensaje de error
+    private boolean success; // true si se eliminaron todas las claves
+}
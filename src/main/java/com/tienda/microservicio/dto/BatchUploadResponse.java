@@ -0,0 +1,17 @@
+package com.tienda.microservicio.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchUploadResponse {
+    private List<UploadResponse> results; // en el mismo orden que los archivos enviados
+    private int succeeded;
+    private int failed;
+    private boolean success;
+}
@@ -0,0 +1,12 @@
+package com.tienda.microservicio.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BoletaCreadaEvent {
+    private Long boletaId;
+}
@@ -0,0 +1,20 @@
+package com.tienda.microservicio.dto;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EfsMigrationStatus {
+    private boolean running;
+    private long moved; // archivos movidos a su subdirectorio
+    private long conflicts; // ya existía un archivo con el mismo nombre en el destino
+    private long errors;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private String message;
+}
@@ -0,0 +1,20 @@
+package com.tienda.microservicio.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PresignedUpload {
+    private String fileName; // clave asignada, necesaria para confirmar la subida
+    private String uploadId; // identificador firmado de esta subida, necesario para confirmarla
+    private String url;
+    private String method;
+    private Map<String, String> headers; // headers firmados que el cliente debe enviar tal cual
+    private Instant expiresAt;
+}
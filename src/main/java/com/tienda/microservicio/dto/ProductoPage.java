@@ -0,0 +1,18 @@
+package com.tienda.microservicio.dto;
+
+import java.util.List;
+
+import com.tienda.microservicio.model.Producto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductoPage {
+    private List<Producto> productos;
+    private Long nextCursor; // id del último producto, null si no hay más páginas
+    private boolean hasMore;
+}
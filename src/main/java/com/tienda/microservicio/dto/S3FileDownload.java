@@ -0,0 +1,22 @@
+package com.tienda.microservicio.dto;
+
+import java.io.InputStream;
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class S3FileDownload {
+    private String fileName;
+    private String key;
+    private long contentLength;
+    private String contentType;
+    private String eTag;
+    private Instant lastModified;
+    private String contentRange; // Solo en descargas parciales (206)
+    private InputStream content; // Cuerpo del GET, se consume una sola vez
+}
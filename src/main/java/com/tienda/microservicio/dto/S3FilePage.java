@@ -0,0 +1,17 @@
+package com.tienda.microservicio.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class S3FilePage {
+    private List<S3FileInfo> files;
+    private List<String> prefixes; // "carpetas" agrupadas por el delimitador
+    private String nextContinuationToken; // null si no hay más páginas
+    private boolean hasMore;
+}
@@ -0,0 +1,31 @@
+package com.tienda.microservicio.health;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+import com.tienda.microservicio.service.AwsEfsService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Salud de EFS con una escritura periódica sobre un archivo de sonda fijo
+ */
+@Component("efsHealthIndicator")
+@RequiredArgsConstructor
+public class EfsHealthIndicator extends SondaHealthIndicator {
+
+    private final AwsEfsService awsEfsService;
+
+    @Value("${aws.efs.mount.path:/mnt/efs}")
+    private String efsMountPath;
+
+    @Override
+    protected Health sondear() {
+        Health.Builder builder = awsEfsService.isEfsAccessible() ? Health.up() : Health.down();
+        return builder
+                .withDetail("service", "AWS EFS")
+                .withDetail("path", efsMountPath)
+                .build();
+    }
+}
@@ -0,0 +1,30 @@
+package com.tienda.microservicio.health;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * Salud de S3 con un HeadBucket: una sola petición, sin listar objetos
+ */
+@Component("s3HealthIndicator")
+@RequiredArgsConstructor
+public class S3HealthIndicator extends SondaHealthIndicator {
+
+    private final S3Client s3Client;
+
+    @Value("${aws.s3.bucket.name}")
+    private String bucketName;
+
+    @Override
+    protected Health sondear() {
+        s3Client.headBucket(request -> request.bucket(bucketName));
+        return Health.up()
+                .withDetail("service", "AWS S3")
+                .withDetail("bucket", bucketName)
+                .build();
+    }
+}
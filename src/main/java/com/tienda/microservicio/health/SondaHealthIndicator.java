@@ -0,0 +1,86 @@
+package com.tienda.microservicio.health;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Health indicator que sondea el almacenamiento en segundo plano y responde
+ * con el último resultado en memoria, de modo que las sondas de Kubernetes
+ * no generan peticiones a S3 ni operaciones en EFS. Cada indicador sondea
+ * en su propio hilo: ni los escaneos de EFS del scheduler de Spring ni una
+ * sonda colgada retrasan a las demás
+ */
+@Slf4j
+public abstract class SondaHealthIndicator implements HealthIndicator {
+
+    @Value("${storage.health.intervalo:30s}")
+    private Duration intervalo = Duration.ofSeconds(30);
+
+    private volatile Health ultimo = Health.unknown().withDetail("message", "Sin comprobaciones todavía").build();
+
+    private volatile Instant ultimaComprobacion;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    void iniciarSondeo() {
+        String nombre = "sonda-" + getClass().getSimpleName();
+        scheduler = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, nombre);
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        scheduler.scheduleWithFixedDelay(this::actualizar, 0, intervalo.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void detenerSondeo() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Comprobación mínima contra el almacenamiento; se ejecuta en el hilo de sondeo
+     */
+    protected abstract Health sondear();
+
+    public void actualizar() {
+        long inicio = System.nanoTime();
+        Health health;
+        try {
+            health = sondear();
+        } catch (Exception e) {
+            log.warn("Sonda de salud {} fallida: {}", getClass().getSimpleName(), e.getMessage());
+            health = Health.down(e).build();
+        }
+        ultimaComprobacion = Instant.now();
+        ultimo = Health.status(health.getStatus())
+                .withDetails(health.getDetails())
+                .withDetail("latenciaMs", Duration.ofNanos(System.nanoTime() - inicio).toMillis())
+                .withDetail("ultimaComprobacion", ultimaComprobacion.toString())
+                .build();
+    }
+
+    @Override
+    public Health health() {
+        // Si el hilo de sondeo dejó de sondear, el último resultado ya no es fiable
+        Instant comprobado = ultimaComprobacion;
+        if (comprobado != null && comprobado.plus(intervalo.multipliedBy(3)).isBefore(Instant.now())) {
+            return Health.down()
+                    .withDetail("message", "Sin comprobaciones recientes")
+                    .withDetail("ultimaComprobacion", comprobado.toString())
+                    .build();
+        }
+        return ultimo;
+    }
+}
@@ -0,0 +1,73 @@
+package com.tienda.microservicio.messaging;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.tienda.microservicio.dto.BoletaCreadaEvent;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+// Publica en RabbitMQ el evento "boleta creada" una vez confirmada la transacción.
+// El envío se hace en un hilo propio para que un broker lento no retrase la compra
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "boleta.pdf.prerender.enabled", havingValue = "true", matchIfMissing = true)
+public class BoletaEventPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${boleta.pdf.cola:boletas.pdf}")
+    private String colaBoletasPdf;
+
+    @Value("${boleta.pdf.publicacion.max-pendientes:1000}")
+    private int maxPendientes = 1000;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void inicializarExecutor() {
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxPendientes)), tarea -> {
+                    Thread hilo = new Thread(tarea, "boleta-publicador");
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+    }
+
+    @PreDestroy
+    void detenerExecutor() {
+        executor.shutdown();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBoletaCreada(BoletaCreadaEvent event) {
+        try {
+            executor.execute(() -> publicar(event));
+        } catch (RejectedExecutionException e) {
+            log.warn("Cola de publicación llena, la boleta {} no se pre-renderizará", event.getBoletaId());
+        }
+    }
+
+    private void publicar(BoletaCreadaEvent event) {
+        try {
+            rabbitTemplate.convertAndSend(colaBoletasPdf, event);
+        } catch (AmqpException e) {
+            // Sin broker el PDF se genera al descargarlo, la compra no se ve afectada
+            log.warn("No se pudo publicar la boleta {} para pre-renderizar: {}",
+                    event.getBoletaId(), e.getMessage());
+        }
+    }
+}
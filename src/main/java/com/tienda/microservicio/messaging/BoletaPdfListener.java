@@ -0,0 +1,34 @@
+package com.tienda.microservicio.messaging;
+
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import com.tienda.microservicio.dto.BoletaCreadaEvent;
+import com.tienda.microservicio.service.BoletaPdfService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+// Consumidores que renderizan en segundo plano el PDF de cada boleta creada. Los
+// fallos se reintentan y, agotados los intentos, el mensaje va a la cola .dlq
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "boleta.pdf.prerender.enabled", havingValue = "true", matchIfMissing = true)
+public class BoletaPdfListener {
+
+    private final BoletaPdfService boletaPdfService;
+
+    @RabbitListener(queues = "${boleta.pdf.cola:boletas.pdf}")
+    public void onBoletaCreada(BoletaCreadaEvent event) {
+        log.debug("Pre-renderizando PDF de la boleta {}", event.getBoletaId());
+        try {
+            boletaPdfService.prerenderizar(event.getBoletaId());
+        } catch (DataIntegrityViolationException e) {
+            // Mensaje reentregado o procesado a la vez por otro consumidor: el PDF ya está guardado
+            log.debug("PDF de la boleta {} ya guardado por otro consumidor", event.getBoletaId());
+        }
+    }
+}
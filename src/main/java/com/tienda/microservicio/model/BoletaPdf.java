@@ -0,0 +1,35 @@
+package com.tienda.microservicio.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// PDF ya renderizado de una boleta (las boletas emitidas no cambian)
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+
+@Entity
+@Table(name = "boleta_pdf")
+public class BoletaPdf {
+
+    @Id
+    private Long boletaId;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] contenido;
+
+    private LocalDateTime generado;
+
+    // boleta.pdf.version con la que se renderizó; las filas anteriores (null) son de un formato viejo
+    @Column(name = "version_formato")
+    private Integer versionFormato;
+}
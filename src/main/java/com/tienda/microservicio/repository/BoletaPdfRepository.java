@@ -0,0 +1,11 @@
+package com.tienda.microservicio.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.tienda.microservicio.model.BoletaPdf;
+
+@Repository
+public interface BoletaPdfRepository extends JpaRepository<BoletaPdf, Long> {
+
+}
@@ -1,6 +1,14 @@
 package com.tienda.microservicio.repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.tienda.microservicio.model.Boleta;
@@ -8,4 +16,12 @@ import com.tienda.microservicio.model.Boleta;
 @Repository
 public interface BoletaRepository extends JpaRepository<Boleta, Long> {
 
+    // Carga la boleta junto con sus detalles para usarla fuera de la sesión
+    @EntityGraph(attributePaths = "detalles")
+    Optional<Boleta> findConDetallesById(Long id);
+
+    // El límite se aplica en la consulta para no cargar todos los ids de un rango grande
+    @Query("select b.id from Boleta b where b.fecha between :desde and :hasta order by b.id")
+    List<Long> findIdsByFechaBetween(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta, Limit limite);
+
 }
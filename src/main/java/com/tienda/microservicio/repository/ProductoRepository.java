@@ -1,5 +1,8 @@
 package com.tienda.microservicio.repository;
 
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -8,4 +11,7 @@ import com.tienda.microservicio.model.Producto;
 @Repository
 public interface ProductoRepository extends JpaRepository<Producto, Long> {
 
-}
\ No newline at end of file
+    // Paginación por keyset: siguiente bloque de productos a partir de un id
+    List<Producto> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+}
@@ -1,17 +1,37 @@
 package com.tienda.microservicio.service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -19,15 +39,74 @@ import com.tienda.microservicio.dto.EfsFileInfo;
 import com.tienda.microservicio.dto.RenameResponse;
 import com.tienda.microservicio.dto.UploadResponse;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class AwsEfsService {
 
+    private static final String ARCHIVO_SONDA = EfsPathResolver.ARCHIVO_SONDA;
+
+    private final EfsFileIndex fileIndex;
+
+    private final EfsPathResolver pathResolver;
+
+    private final EfsDedupStore dedupStore;
+
+    private final EfsFileWriter fileWriter;
+
     @Value("${aws.efs.mount.path:/mnt/efs}")
     private String efsMountPath;
 
+    @Value("${aws.efs.index.enabled:true}")
+    private boolean indiceHabilitado = true;
+
+    // Stats simultáneos durante un escaneo del directorio
+    @Value("${aws.efs.index.paralelismo:16}")
+    private int paralelismoIndice = 16;
+
+    private ExecutorService executorIndice;
+
+    // También lo usa listFiles mientras el índice no está cargado o si está deshabilitado
+    @PostConstruct
+    void inicializarIndice() {
+        AtomicInteger contador = new AtomicInteger();
+        executorIndice = Executors.newFixedThreadPool(Math.max(1, paralelismoIndice), tarea -> {
+            Thread hilo = new Thread(tarea, "efs-index-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    void detenerIndice() {
+        executorIndice.shutdownNow();
+    }
+
+    // La primera ejecución (al arrancar) carga el índice; las siguientes recogen cambios de terceros
+    @Scheduled(initialDelay = 0, fixedDelayString = "${aws.efs.index.reconciliacion:5m}")
+    public void reconciliarIndice() {
+        if (!indiceHabilitado) {
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        fileIndex.iniciarEscaneo();
+        try {
+            Map<String, EfsFileInfo> encontrados = escanearDirectorio();
+            fileIndex.aplicarEscaneo(encontrados);
+            log.info("Índice de EFS reconciliado: {} archivos en {} ms", encontrados.size(),
+                    (System.nanoTime() - inicio) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            fileIndex.cancelarEscaneo();
+            log.error("Error al reconciliar el índice de EFS: {}", e.getMessage());
+        }
+    }
+
     // Sube un archivo al sistema EFS
     public UploadResponse uploadFile(MultipartFile file) {
         try {
@@ -41,11 +120,19 @@ public class AwsEfsService {
             String originalFileName = file.getOriginalFilename();
             String fileName = generateUniqueFileName(originalFileName);
 
-            // Creamos path completo del archivo
-            Path filePath = efsPath.resolve(fileName);
+            // Creamos path completo del archivo (en su subdirectorio si el layout es fragmentado)
+            Path filePath = pathResolver.ubicarNuevo(fileName);
 
-            // Guardamos el archivo en EFS
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+            // Guardamos el archivo en EFS (como enlace a un blob existente si el contenido se repite);
+            // en ambos casos se escribe en un temporal y se publica con un rename atómico
+            if (dedupStore.isHabilitado()) {
+                dedupStore.guardar(file, filePath);
+            } else {
+                try (InputStream in = file.getInputStream()) {
+                    fileWriter.escribir(in, filePath);
+                }
+            }
+            actualizarIndice(filePath);
 
             log.info("Archivo subido exitosamente a EFS: {}", fileName);
 
@@ -71,7 +158,7 @@ public class AwsEfsService {
     public RenameResponse renameFile(String oldFileName, String newFileName) {
         try {
             // Validar que el archivo origen existe
-            Path oldPath = Paths.get(efsMountPath, oldFileName);
+            Path oldPath = pathResolver.ubicar(oldFileName);
             if (!Files.exists(oldPath)) {
                 log.warn("Archivo origen no encontrado: {}", oldFileName);
                 return new RenameResponse(
@@ -98,7 +185,7 @@ public class AwsEfsService {
             String sanitizedNewFileName = sanitizeFileName(newFileName.trim());
             
             // Verificar que el archivo destino no existe
-            Path newPath = Paths.get(efsMountPath, sanitizedNewFileName);
+            Path newPath = pathResolver.ubicar(sanitizedNewFileName);
             if (Files.exists(newPath)) {
                 log.warn("El archivo destino ya existe: {}", sanitizedNewFileName);
                 return new RenameResponse(
@@ -113,8 +200,12 @@ public class AwsEfsService {
             // Obtener información del archivo antes del renombrado
             EfsFileInfo oldFileInfo = convertToEfsFileInfo(oldPath);
 
-            // Realizar el renombrado
+            // Realizar el renombrado (con layout fragmentado el destino puede estar en otro subdirectorio)
+            newPath = pathResolver.ubicarNuevo(sanitizedNewFileName);
             Files.move(oldPath, newPath);
+            fileWriter.sincronizarDirectorio(newPath.getParent());
+            fileIndex.eliminar(oldPath.getFileName().toString());
+            actualizarIndice(newPath);
             
             log.info("Archivo renombrado exitosamente de '{}' a '{}'", oldFileName, sanitizedNewFileName);
 
@@ -138,62 +229,65 @@ public class AwsEfsService {
         }
     }
 
-    // Listamos todos los archivos del directorio EFS
+    // Listamos todos los archivos del directorio EFS (desde el índice una vez cargado)
     public List<EfsFileInfo> listFiles() {
-        List<EfsFileInfo> fileList = new ArrayList<>();
+        if (fileIndex.isListo()) {
+            return fileIndex.listar();
+        }
 
         try {
-            Path efsPath = Paths.get(efsMountPath);
-
-            if (!Files.exists(efsPath)) {
-                log.warn("El directorio EFS no existe: {}", efsMountPath);
-                return fileList;
-            }
-
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(efsPath)) {
-                for (Path file : stream) {
-                    if (Files.isRegularFile(file)) {
-                        fileList.add(convertToEfsFileInfo(file));
-                    }
-                }
-            }
-
+            return new ArrayList<>(escanearDirectorio().values());
         } catch (IOException e) {
             log.error("Error al listar archivos de EFS: {}", e.getMessage());
             throw new RuntimeException("Error al listar archivos de EFS: " + e.getMessage());
         }
-
-        return fileList;
     }
 
-    // Descargar un archivo del EFS
-    public byte[] downloadFile(String fileName) {
-        try {
-            Path filePath = Paths.get(efsMountPath, fileName);
-
-            if (!Files.exists(filePath)) {
-                throw new RuntimeException("Archivo no encontrado: " + fileName);
+    // Copia la porción [inicio, fin] de un archivo de EFS con FileChannel.transferTo,
+    // sin cargar el archivo en el heap: la memoria por descarga es constante
+    public void transferRange(String fileName, long inicio, long fin, OutputStream out) throws IOException {
+        Path filePath = pathResolver.ubicar(fileName);
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            // No se cierra: cerrarlo cerraría también el stream de la respuesta
+            WritableByteChannel destino = Channels.newChannel(out);
+            long posicion = inicio;
+            while (posicion <= fin) {
+                long enviados = channel.transferTo(posicion, fin - posicion + 1, destino);
+                if (enviados <= 0) {
+                    break;
+                }
+                posicion += enviados;
             }
-
-            return Files.readAllBytes(filePath);
-
-        } catch (IOException e) {
-            log.error("Error al descargar archivo de EFS: {}", e.getMessage());
-            throw new RuntimeException("Error al leer el archivo: " + e.getMessage());
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("Archivo no encontrado: " + fileName);
         }
     }
 
+    // ETag derivado del tamaño y la fecha de modificación, para validar If-Range
+    public String etag(EfsFileInfo fileInfo) {
+        return "\"" + Long.toHexString(fileInfo.getLastModified().toEpochMilli())
+                + "-" + Long.toHexString(fileInfo.getSize()) + "\"";
+    }
+
     // Eliminar un archivo del EFS
     public boolean deleteFile(String fileName) {
         try {
-            Path filePath = Paths.get(efsMountPath, fileName);
+            Path filePath = pathResolver.ubicar(fileName);
 
             if (!Files.exists(filePath)) {
                 log.warn("Archivo no encontrado para eliminar: {}", fileName);
+                fileIndex.eliminar(filePath.getFileName().toString());
                 return false;
             }
 
+            // Con deduplicación, el blob se libera si este era su último nombre
+            Object inodo = dedupStore.isHabilitado() ? dedupStore.inodo(filePath) : null;
             Files.delete(filePath);
+            fileIndex.eliminar(filePath.getFileName().toString());
+            if (inodo != null) {
+                dedupStore.liberar(inodo);
+            }
             log.info("Archivo eliminado exitosamente de EFS: {}", fileName);
             return true;
 
@@ -203,30 +297,65 @@ public class AwsEfsService {
         }
     }
 
-    // Verifica si un archivo existe en EFS
+    // Verifica si un archivo existe en EFS; solo los que no están en el índice van al disco
     public boolean fileExists(String fileName) {
-        Path filePath = Paths.get(efsMountPath, fileName);
+        if (fileIndex.isListo() && fileIndex.obtener(fileName) != null) {
+            return true;
+        }
+        Path filePath = pathResolver.ubicar(fileName);
         return Files.exists(filePath) && Files.isRegularFile(filePath);
     }
 
-    // Obtiene información detallada de un archivo
+    // Obtiene información detallada de un archivo desde el índice, o con un único stat
+    // si no está (p. ej. creado por un tercero desde la última reconciliación)
     public EfsFileInfo getFileInfo(String fileName) {
-        try {
-            Path filePath = Paths.get(efsMountPath, fileName);
+        if (fileIndex.isListo()) {
+            EfsFileInfo indexado = fileIndex.obtener(fileName);
+            if (indexado != null) {
+                return indexado;
+            }
+        }
 
-            if (!Files.exists(filePath)) {
-                throw new RuntimeException("Archivo no encontrado: " + fileName);
+        try {
+            Path filePath = pathResolver.ubicar(fileName);
+            EfsFileInfo fileInfo = convertToEfsFileInfo(filePath);
+            if (fileIndex.isListo()) {
+                fileIndex.registrar(fileInfo);
             }
+            return fileInfo;
 
-            return convertToEfsFileInfo(filePath);
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("Archivo no encontrado: " + fileName);
+        } catch (IOException e) {
+            log.error("Error al obtener información del archivo: {}", e.getMessage());
+            throw new RuntimeException("Error al obtener información del archivo: " + e.getMessage());
+        }
+    }
+
+    // Stat del archivo en disco sin pasar por el índice, para las descargas: el tamaño del
+    // índice puede haber quedado atrás si otro nodo reescribió el archivo. Refresca la entrada
+    public EfsFileInfo getFileInfoActual(String fileName) {
+        Path filePath = pathResolver.ubicar(fileName);
+        try {
+            EfsFileInfo fileInfo = convertToEfsFileInfo(filePath);
+            if (fileIndex.isListo()) {
+                fileIndex.registrar(fileInfo);
+            }
+            return fileInfo;
 
+        } catch (NoSuchFileException e) {
+            if (fileIndex.isListo()) {
+                fileIndex.eliminar(filePath.getFileName().toString());
+            }
+            throw new RuntimeException("Archivo no encontrado: " + fileName);
         } catch (IOException e) {
             log.error("Error al obtener información del archivo: {}", e.getMessage());
             throw new RuntimeException("Error al obtener información del archivo: " + e.getMessage());
         }
     }
 
-    // Verifica que el directorio EFS exista y sea accesible
+    // Verifica que el directorio EFS exista y sea accesible. Lo invoca la sonda de salud
+    // periódica, no cada petición de /health
     public boolean isEfsAccessible() {
         try {
             Path efsPath = Paths.get(efsMountPath);
@@ -236,11 +365,10 @@ public class AwsEfsService {
                 return false;
             }
 
-            // Intenta crear un archivo temporal para verificar escritura
-            Path tempFile = efsPath.resolve(".health_check_" + System.currentTimeMillis());
+            // Sobrescribe siempre el mismo archivo de sonda: una escritura en lugar de crear y borrar
+            Path probeFile = efsPath.resolve(ARCHIVO_SONDA);
             try {
-                Files.createFile(tempFile);
-                Files.delete(tempFile);
+                Files.writeString(probeFile, Instant.now().toString());
                 return true;
             } catch (IOException e) {
                 log.warn("No se puede escribir en EFS: {}", e.getMessage());
@@ -254,6 +382,100 @@ public class AwsEfsService {
     }
 
     // Métodos auxiliares
+
+    // Lee la raíz una vez y hace los stats en paralelo; con layout fragmentado cada
+    // subdirectorio de primer nivel se recorre en una tarea
+    private Map<String, EfsFileInfo> escanearDirectorio() throws IOException {
+        Path efsPath = pathResolver.getRaiz();
+        if (!Files.exists(efsPath)) {
+            log.warn("El directorio EFS no existe: {}", efsMountPath);
+            return Map.of();
+        }
+
+        List<Future<List<EfsFileInfo>>> lecturas = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(efsPath)) {
+            for (Path entrada : stream) {
+                if (pathResolver.esDirectorioFragmento(entrada)) {
+                    lecturas.add(executorIndice.submit(() -> leerFragmento(entrada)));
+                } else if (!EfsPathResolver.esArchivoInterno(entrada)) {
+                    lecturas.add(executorIndice.submit(() -> leerSiEsArchivo(entrada)));
+                }
+            }
+        }
+
+        Map<String, EfsFileInfo> encontrados = new HashMap<>();
+        try {
+            for (Future<List<EfsFileInfo>> lectura : lecturas) {
+                for (EfsFileInfo fileInfo : esperar(lectura)) {
+                    encontrados.put(fileInfo.getFileName(), fileInfo);
+                }
+            }
+        } finally {
+            lecturas.forEach(lectura -> lectura.cancel(true));
+        }
+        return encontrados;
+    }
+
+    // Vacía si no es un archivo regular o desapareció entre el listado y el stat
+    private List<EfsFileInfo> leerSiEsArchivo(Path file) throws IOException {
+        try {
+            return List.of(convertToEfsFileInfo(file));
+        } catch (NoSuchFileException e) {
+            return List.of();
+        }
+    }
+
+    // El recorrido ya trae los atributos de cada archivo, así que no hace falta otro stat
+    private List<EfsFileInfo> leerFragmento(Path directorio) throws IOException {
+        List<EfsFileInfo> encontrados = new ArrayList<>();
+        Files.walkFileTree(directorio, Set.of(), pathResolver.getNiveles(), new SimpleFileVisitor<>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && !EfsPathResolver.esArchivoInterno(file)) {
+                    encontrados.add(toEfsFileInfo(file, attributes));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+        return encontrados;
+    }
+
+    private List<EfsFileInfo> esperar(Future<List<EfsFileInfo>> lectura) throws IOException {
+        try {
+            return lectura.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Escaneo de EFS interrumpido");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe) {
+                throw ioe;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // Tras una escritura propia, un stat para que el índice tenga tamaño y fecha reales
+    private void actualizarIndice(Path filePath) {
+        if (!indiceHabilitado) {
+            return;
+        }
+        try {
+            fileIndex.registrar(convertToEfsFileInfo(filePath));
+        } catch (IOException e) {
+            log.warn("No se pudo indexar {}: {}", filePath.getFileName(), e.getMessage());
+            fileIndex.eliminar(filePath.getFileName().toString());
+        }
+    }
+
     private String generateUniqueFileName(String originalFileName) {
         String extension = "";
         if (originalFileName != null && originalFileName.contains(".")) {
@@ -262,11 +484,23 @@ public class AwsEfsService {
         return UUID.randomUUID().toString() + extension;
     }
 
+    // Un solo stat por archivo (en EFS cada uno es un viaje NFS) y content type por extensión
     private EfsFileInfo convertToEfsFileInfo(Path filePath) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            throw new NoSuchFileException(filePath.toString());
+        }
+        return toEfsFileInfo(filePath, attributes);
+    }
+
+    // También lo usa la migración de layout, que ya tiene los atributos
+    static EfsFileInfo toEfsFileInfo(Path filePath, BasicFileAttributes attributes) {
         String fileName = filePath.getFileName().toString();
-        long size = Files.size(filePath);
-        Instant lastModified = Files.getLastModifiedTime(filePath).toInstant();
-        String contentType = Files.probeContentType(filePath);
+        long size = attributes.size();
+        Instant lastModified = attributes.lastModifiedTime().toInstant();
+        String contentType = MediaTypeFactory.getMediaType(fileName)
+                .map(MediaType::toString)
+                .orElse(null);
 
         return new EfsFileInfo(
                 fileName,
@@ -1,10 +1,11 @@
 package com.tienda.microservicio.service;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -13,14 +14,22 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tienda.microservicio.dto.S3FileDownload;
 import com.tienda.microservicio.dto.S3FileInfo;
+import com.tienda.microservicio.dto.S3FilePage;
 import com.tienda.microservicio.dto.UploadResponse;
+import com.tienda.microservicio.util.HttpRangeSupport;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.Abortable;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
@@ -33,17 +42,74 @@ import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.utils.http.SdkHttpUtils;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AwsS3Service {
 
+    /**
+     * El objeto ya no es la versión indicada en If-Range: se responde completo
+     */
+    public static class ArchivoModificadoException extends RuntimeException {
+        public ArchivoModificadoException(String fileName) {
+            super("Archivo modificado: " + fileName);
+        }
+    }
+
+    /**
+     * Ningún byte del rango pedido existe en el objeto (416)
+     */
+    public static class RangoNoSatisfacibleException extends RuntimeException {
+        public RangoNoSatisfacibleException(String fileName) {
+            super("Rango no satisfacible: " + fileName);
+        }
+    }
+
+    // Buffer de copia para descargas, reutilizado por cada hilo
+    private static final int TAMANO_BUFFER_DESCARGA = 64 * 1024;
+    private static final ThreadLocal<byte[]> BUFFER_DESCARGA = ThreadLocal
+            .withInitial(() -> new byte[TAMANO_BUFFER_DESCARGA]);
+
     private final S3Client s3Client;
 
+    private final S3MultipartUploader multipartUploader;
+
+    private final S3MetadataCache metadataCache;
+
+    private final S3DiskCache diskCache;
+
+    private final ObjectMapper objectMapper;
+
     @Value("${aws.s3.bucket.name}")
     private String bucketName;
 
+    @Value("${aws.s3.listado.tamano-defecto:100}")
+    private int tamanoPaginaDefecto = 100;
+
+    // ListObjectsV2 devuelve como máximo 1000 claves por llamada
+    @Value("${aws.s3.listado.tamano-maximo:1000}")
+    private int tamanoPaginaMaximo = 1000;
+
+    // URL del bucket con "/" final; a cada clave solo se le añade la ruta codificada
+    private String urlBase;
+
+    @PostConstruct
+    void inicializarUrlBase() {
+        try {
+            String url = s3Client.utilities().getUrl(GetUrlRequest.builder()
+                    .bucket(bucketName)
+                    .key("_")
+                    .build())
+                    .toString();
+            urlBase = url.substring(0, url.length() - 1);
+        } catch (Exception e) {
+            // Fallback URL construction
+            urlBase = String.format("https://%s.s3.amazonaws.com/", bucketName);
+        }
+    }
+
     /**
      * Sube un archivo al bucket S3
      */
@@ -54,16 +120,8 @@ public class AwsS3Service {
             String fileName = generateUniqueFileName(originalFileName);
             String contentType = file.getContentType();
 
-            // Crear request de subida
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(fileName)
-                    .contentType(contentType)
-                    .contentLength(file.getSize())
-                    .build();
-
-            // Subir archivo
-            s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(file.getInputStream(), file.getSize()));
+            // Subir archivo (en partes paralelas si es grande)
+            putContent(fileName, contentType, file);
 
             // Generar URL del archivo
             String fileUrl = getFileUrl(fileName);
@@ -101,28 +159,19 @@ public class AwsS3Service {
      */
     public UploadResponse updateFile(String fileName, MultipartFile file) {
         try {
-            // Obtener información del archivo anterior para logging
-            S3FileInfo oldFileInfo = null;
-            try {
-                oldFileInfo = getFileInfo(fileName);
-                log.info("Actualizando archivo existente: {} (tamaño anterior: {} bytes)", 
-                        fileName, oldFileInfo.getSize());
-            } catch (Exception e) {
-                log.warn("No se pudo obtener información del archivo anterior: {}", e.getMessage());
+            // Tamaño anterior para logging, solo si ya está en caché (sin HEAD extra)
+            S3MetadataCache.Metadatos anterior = metadataCache.obtener(fileName);
+            if (anterior != null && anterior.existe()) {
+                log.info("Actualizando archivo existente: {} (tamaño anterior: {} bytes)",
+                        fileName, anterior.size());
+            } else {
+                log.info("Actualizando archivo existente: {}", fileName);
             }
 
             String contentType = file.getContentType();
 
-            // Crear request de actualización (sobrescritura)
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(fileName)
-                    .contentType(contentType)
-                    .contentLength(file.getSize())
-                    .build();
-
-            // Sobrescribir archivo
-            s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(file.getInputStream(), file.getSize()));
+            // Sobrescribir archivo (en partes paralelas si es grande)
+            putContent(fileName, contentType, file);
 
             // Generar URL del archivo
             String fileUrl = getFileUrl(fileName);
@@ -157,19 +206,39 @@ public class AwsS3Service {
     }
 
     /**
-     * Lista todos los archivos del bucket
+     * Lista los archivos del bucket: hasta 1000 claves, como un ListObjectsV2 sin parámetros
      */
     public List<S3FileInfo> listFiles() {
+        return listFilesPage(null, null, tamanoPaginaMaximo, null).getFiles();
+    }
+
+    /**
+     * Lista una página del bucket filtrando por prefijo. Con delimitador las
+     * claves que lo contienen tras el prefijo se agrupan en prefixes
+     */
+    public S3FilePage listFilesPage(String prefix, String delimiter, Integer maxKeys, String continuationToken) {
+        int tamano = maxKeys == null ? tamanoPaginaDefecto : Math.max(1, Math.min(maxKeys, tamanoPaginaMaximo));
+
         try {
             ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
                     .bucket(bucketName)
+                    .prefix(prefix)
+                    .delimiter(delimiter)
+                    .maxKeys(tamano)
+                    .continuationToken(continuationToken)
                     .build();
 
             ListObjectsV2Response listResponse = s3Client.listObjectsV2(listRequest);
 
-            return listResponse.contents().stream()
+            List<S3FileInfo> files = listResponse.contents().stream()
                     .map(this::convertToS3FileInfo)
                     .collect(Collectors.toList());
+            List<String> prefixes = listResponse.commonPrefixes().stream()
+                    .map(CommonPrefix::prefix)
+                    .collect(Collectors.toList());
+            boolean hasMore = Boolean.TRUE.equals(listResponse.isTruncated());
+
+            return new S3FilePage(files, prefixes, hasMore ? listResponse.nextContinuationToken() : null, hasMore);
 
         } catch (S3Exception e) {
             log.error("Error al listar archivos: {}", e.getMessage());
@@ -178,28 +247,182 @@ public class AwsS3Service {
     }
 
     /**
-     * Descarga un archivo del bucket
+     * Recorre todas las páginas del prefijo y escribe cada archivo como una
+     * línea JSON según llegan, sin acumular el listado en memoria
      */
-    public byte[] downloadFile(String fileName) {
+    public void exportFiles(String prefix, OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.setRootValueSeparator(null);
+
+        ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .maxKeys(tamanoPaginaMaximo)
+                .build();
+
         try {
-            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+            for (ListObjectsV2Response pagina : s3Client.listObjectsV2Paginator(listRequest)) {
+                for (S3Object s3Object : pagina.contents()) {
+                    generator.writeObject(convertToS3FileInfo(s3Object));
+                    generator.writeRaw('\n');
+                }
+                generator.flush();
+            }
+        } catch (S3Exception e) {
+            log.error("Error al exportar el listado de archivos: {}", e.getMessage());
+            throw new IOException("Error al listar archivos: " + e.getMessage(), e);
+        }
+
+        generator.flush();
+    }
+
+    /**
+     * Abre la descarga de un archivo del bucket. Los metadatos salen de la propia
+     * respuesta del GET y el cuerpo queda sin leer para copiarlo en streaming
+     */
+    public S3FileDownload openDownload(String fileName) {
+        if (diskCache.isHabilitada()) {
+            try {
+                S3FileDownload enDisco = diskCache.abrir(fileName, extractFileName(fileName));
+                if (enDisco != null) {
+                    return enDisco;
+                }
+            } catch (UncheckedIOException e) {
+                log.warn("Caché en disco no disponible para {}: {}", fileName, e.getMessage());
+            }
+        }
+
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileName)
+                .build();
+
+        return abrirDescarga(getObjectRequest, fileName);
+    }
+
+    /**
+     * Abre la descarga de una porción del archivo, pasando el Range tal cual a
+     * GetObject. Si se indica validador (ETag fuerte o fecha HTTP, como en
+     * If-Range) y el objeto ya no coincide, lanza ArchivoModificadoException
+     */
+    public S3FileDownload openRangeDownload(String fileName, String range, String validador) {
+        GetObjectRequest.Builder builder = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileName)
+                .range(range);
+
+        if (validador != null) {
+            builder.ifMatch(etagParaIfRange(fileName, validador.trim()));
+        }
+
+        try {
+            return abrirDescarga(builder.build(), fileName);
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof S3Exception s3e && s3e.statusCode() == 412) {
+                throw new ArchivoModificadoException(fileName);
+            }
+            if (e.getCause() instanceof S3Exception s3e && s3e.statusCode() == 416) {
+                throw new RangoNoSatisfacibleException(fileName);
+            }
+            throw e;
+        }
+    }
+
+    // S3 solo recibe ETags: If-Unmodified-Since aceptaría cualquier versión anterior a la
+    // fecha, e If-Range exige que Last-Modified coincida exactamente. Una fecha se compara
+    // aquí y se traduce al ETag de esa versión, así S3 sigue rechazando (412) un objeto
+    // reescrito después de leer los metadatos
+    private String etagParaIfRange(String fileName, String validador) {
+        if (validador.startsWith("\"") || validador.startsWith("W/")) {
+            return validador;
+        }
+
+        S3MetadataCache.Metadatos metadatos = metadataCache.obtener(fileName);
+        String eTag;
+        Instant lastModified;
+        if (metadatos != null && metadatos.existe()) {
+            eTag = metadatos.eTag();
+            lastModified = metadatos.lastModified();
+        } else {
+            S3FileDownload head = headForDownload(fileName);
+            eTag = head.getETag();
+            lastModified = head.getLastModified();
+        }
+
+        if (eTag == null || !HttpRangeSupport.ifRangeCoincide(validador, null, lastModified)) {
+            throw new ArchivoModificadoException(fileName);
+        }
+        return eTag;
+    }
+
+    /**
+     * Metadatos necesarios para servir rangos (tamaño, ETag, fecha) sin cuerpo
+     */
+    public S3FileDownload headForDownload(String fileName) {
+        try {
+            HeadObjectResponse headResponse = s3Client.headObject(HeadObjectRequest.builder()
                     .bucket(bucketName)
                     .key(fileName)
-                    .build();
+                    .build());
+            metadataCache.guardar(fileName, headResponse);
 
-            ResponseInputStream<GetObjectResponse> s3Object = s3Client.getObject(getObjectRequest);
-
-            return readAllBytes(s3Object);
+            return new S3FileDownload(
+                    extractFileName(fileName),
+                    fileName,
+                    headResponse.contentLength(),
+                    headResponse.contentType(),
+                    headResponse.eTag(),
+                    headResponse.lastModified(),
+                    null,
+                    null);
 
-        } catch (NoSuchKeyException e) {
-            log.error("Archivo no encontrado: {}", fileName);
-            throw new RuntimeException("Archivo no encontrado: " + fileName);
         } catch (S3Exception e) {
-            log.error("Error de S3 al descargar archivo: {}", e.getMessage());
+            if (esNoEncontrado(e)) {
+                metadataCache.marcarAusente(fileName);
+                throw new RuntimeException("Archivo no encontrado: " + fileName);
+            }
             throw new RuntimeException("Error de S3: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copia el cuerpo de una descarga al stream de salida sin acumularlo en memoria
+     */
+    public long transferTo(S3FileDownload download, OutputStream out) throws IOException {
+        byte[] buffer = BUFFER_DESCARGA.get();
+        long total = 0;
+
+        try (InputStream in = download.getContent()) {
+            int bytesRead;
+            while ((bytesRead = in.read(buffer, 0, buffer.length)) != -1) {
+                out.write(buffer, 0, bytesRead);
+                total += bytesRead;
+            }
         } catch (IOException e) {
-            log.error("Error al leer el archivo descargado: {}", e.getMessage());
-            throw new RuntimeException("Error al leer el archivo: " + e.getMessage());
+            // Si el cliente corta la descarga se aborta la conexión en lugar de drenarla
+            if (download.getContent() instanceof Abortable s3Object) {
+                s3Object.abort();
+            }
+            log.warn("Descarga de {} interrumpida tras {} bytes: {}", download.getKey(), total, e.getMessage());
+            throw e;
+        }
+
+        return total;
+    }
+
+    /**
+     * Libera una descarga abierta cuyo cuerpo no se va a leer: el GET de S3 se
+     * aborta (cerrarlo drenaría el objeto entero) y un archivo local se cierra
+     */
+    public void abortar(S3FileDownload download) {
+        if (download.getContent() instanceof Abortable s3Object) {
+            s3Object.abort();
+            return;
+        }
+        try {
+            download.getContent().close();
+        } catch (IOException e) {
+            log.warn("No se pudo cerrar la descarga de {}: {}", download.getKey(), e.getMessage());
         }
     }
 
@@ -214,30 +437,30 @@ public class AwsS3Service {
                     .build();
 
             s3Client.deleteObject(deleteRequest);
+            metadataCache.marcarAusente(fileName);
+            diskCache.invalidar(fileName);
             log.info("Archivo eliminado exitosamente: {}", fileName);
             return true;
 
         } catch (S3Exception e) {
+            metadataCache.invalidar(fileName);
+            diskCache.invalidar(fileName);
             log.error("Error al eliminar archivo: {}", e.getMessage());
             return false;
         }
     }
 
     /**
-     * Verifica si un archivo existe
+     * Verifica si un archivo existe (desde la caché de metadatos si se conoce)
      */
     public boolean fileExists(String fileName) {
-        try {
-            HeadObjectRequest headRequest = HeadObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(fileName)
-                    .build();
-
-            s3Client.headObject(headRequest);
-            return true;
+        S3MetadataCache.Metadatos metadatos = metadataCache.obtener(fileName);
+        if (metadatos != null) {
+            return metadatos.existe();
+        }
 
-        } catch (NoSuchKeyException e) {
-            return false;
+        try {
+            return consultarMetadatos(fileName).existe();
         } catch (S3Exception e) {
             log.error("Error al verificar existencia del archivo: {}", e.getMessage());
             return false;
@@ -248,32 +471,131 @@ public class AwsS3Service {
      * Obtiene información detallada de un archivo
      */
     public S3FileInfo getFileInfo(String fileName) {
+        S3MetadataCache.Metadatos metadatos = metadataCache.obtener(fileName);
+
+        try {
+            // Los metadatos de un listado no traen content type: se completan con HEAD
+            if (metadatos == null || !metadatos.completos()) {
+                metadatos = consultarMetadatos(fileName);
+            }
+        } catch (S3Exception e) {
+            throw new RuntimeException("Error de S3: " + e.getMessage());
+        }
+
+        if (!metadatos.existe()) {
+            throw new RuntimeException("Archivo no encontrado: " + fileName);
+        }
+
+        return new S3FileInfo(
+                extractFileName(fileName),
+                fileName,
+                metadatos.size(),
+                metadatos.lastModified(),
+                metadatos.contentType(),
+                getFileUrl(fileName));
+    }
+
+    /**
+     * HEAD sin pasar por la caché, con los metadatos de usuario (x-amz-meta-*).
+     * Devuelve null si el objeto no existe
+     */
+    public HeadObjectResponse consultarObjeto(String fileName) {
+        try {
+            HeadObjectResponse headResponse = s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(fileName)
+                    .build());
+            metadataCache.guardar(fileName, headResponse);
+            return headResponse;
+        } catch (S3Exception e) {
+            if (!esNoEncontrado(e)) {
+                throw new RuntimeException("Error de S3: " + e.getMessage());
+            }
+            metadataCache.marcarAusente(fileName);
+            return null;
+        }
+    }
+
+    // Métodos auxiliares privados
+
+    private S3MetadataCache.Metadatos consultarMetadatos(String fileName) {
         try {
             HeadObjectRequest headRequest = HeadObjectRequest.builder()
                     .bucket(bucketName)
                     .key(fileName)
                     .build();
 
-            HeadObjectResponse headResponse = s3Client.headObject(headRequest);
+            return metadataCache.guardar(fileName, s3Client.headObject(headRequest));
+        } catch (S3Exception e) {
+            if (!esNoEncontrado(e)) {
+                throw e;
+            }
+            return metadataCache.marcarAusente(fileName);
+        }
+    }
+
+    // HEAD no tiene cuerpo, así que un 404 no siempre llega como NoSuchKeyException
+    private boolean esNoEncontrado(S3Exception e) {
+        return e instanceof NoSuchKeyException || e.statusCode() == 404;
+    }
+
+    private void putContent(String fileName, String contentType, MultipartFile file) throws IOException {
+        try {
+            subirContenido(fileName, contentType, file);
+        } finally {
+            // Tanto si la escritura termina como si falla, lo cacheado ya no es fiable
+            metadataCache.invalidar(fileName);
+            diskCache.invalidar(fileName);
+        }
+    }
+
+    private void subirContenido(String fileName, String contentType, MultipartFile file) throws IOException {
+        if (multipartUploader.usarMultiparte(file.getSize())) {
+            try (InputStream in = file.getInputStream()) {
+                multipartUploader.subir(fileName, contentType, in);
+            }
+            return;
+        }
+
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileName)
+                .contentType(contentType)
+                .contentLength(file.getSize())
+                .build();
+
+        try (InputStream in = file.getInputStream()) {
+            s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(in, file.getSize()));
+        }
+    }
+
+    private S3FileDownload abrirDescarga(GetObjectRequest getObjectRequest, String fileName) {
+        try {
+            ResponseInputStream<GetObjectResponse> s3Object = s3Client.getObject(getObjectRequest);
+            GetObjectResponse response = s3Object.response();
+            metadataCache.guardar(fileName, response);
 
-            return new S3FileInfo(
+            return new S3FileDownload(
                     extractFileName(fileName),
                     fileName,
-                    headResponse.contentLength(),
-                    headResponse.lastModified(),
-                    headResponse.contentType(),
-                    getFileUrl(fileName));
+                    response.contentLength(),
+                    response.contentType(),
+                    response.eTag(),
+                    response.lastModified(),
+                    response.contentRange(),
+                    s3Object);
 
         } catch (NoSuchKeyException e) {
+            log.error("Archivo no encontrado: {}", fileName);
+            metadataCache.marcarAusente(fileName);
             throw new RuntimeException("Archivo no encontrado: " + fileName);
         } catch (S3Exception e) {
-            throw new RuntimeException("Error de S3: " + e.getMessage());
+            log.error("Error de S3 al descargar archivo: {}", e.getMessage());
+            throw new RuntimeException("Error de S3: " + e.getMessage(), e);
         }
     }
 
-    // Métodos auxiliares privados
-
-    private String generateUniqueFileName(String originalFileName) {
+    String generateUniqueFileName(String originalFileName) {
         String extension = "";
         if (originalFileName != null && originalFileName.contains(".")) {
             extension = originalFileName.substring(originalFileName.lastIndexOf("."));
@@ -282,21 +604,11 @@ public class AwsS3Service {
     }
 
     private String getFileUrl(String fileName) {
-        try {
-            GetUrlRequest getUrlRequest = GetUrlRequest.builder()
-                    .bucket(bucketName)
-                    .key(fileName)
-                    .build();
-
-            return s3Client.utilities().getUrl(getUrlRequest).toString();
-        } catch (Exception e) {
-            // Fallback URL construction
-            return String.format("https://%s.s3.amazonaws.com/%s",
-                    bucketName, URLEncoder.encode(fileName, StandardCharsets.UTF_8));
-        }
+        return urlBase + SdkHttpUtils.urlEncodeIgnoreSlashes(fileName);
     }
 
     private S3FileInfo convertToS3FileInfo(S3Object s3Object) {
+        metadataCache.guardar(s3Object);
         return new S3FileInfo(
                 extractFileName(s3Object.key()),
                 s3Object.key(),
@@ -309,17 +621,4 @@ public class AwsS3Service {
     private String extractFileName(String key) {
         return key.contains("/") ? key.substring(key.lastIndexOf("/") + 1) : key;
     }
-
-    private byte[] readAllBytes(ResponseInputStream<GetObjectResponse> inputStream) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        byte[] data = new byte[1024];
-        int bytesRead;
-
-        while ((bytesRead = inputStream.read(data, 0, data.length)) != -1) {
-            buffer.write(data, 0, bytesRead);
-        }
-
-        inputStream.close();
-        return buffer.toByteArray();
-    }
 }
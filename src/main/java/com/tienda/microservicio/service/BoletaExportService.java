@@ -0,0 +1,177 @@
+package com.tienda.microservicio.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import com.tienda.microservicio.repository.BoletaRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BoletaExportService {
+
+    private final BoletaRepository boletaRepo;
+
+    private final BoletaPdfService boletaPdfService;
+
+    // Hilos que renderizan PDFs en paralelo
+    @Value("${boleta.export.paralelismo:4}")
+    private int paralelismo = 4;
+
+    // PDFs en memoria a la vez (renderizándose o esperando a escribirse en el ZIP)
+    @Value("${boleta.export.max-en-vuelo:16}")
+    private int maxEnVuelo = 16;
+
+    @Value("${boleta.export.max-boletas:5000}")
+    private int maxBoletas = 5000;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void inicializarExecutor() {
+        AtomicInteger contador = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, paralelismo), tarea -> {
+            Thread hilo = new Thread(tarea, "boleta-export-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    void detenerExecutor() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ids a exportar: los indicados explícitamente o los del rango de fechas
+     */
+    public List<Long> resolverIds(List<Long> ids, LocalDateTime desde, LocalDateTime hasta) {
+        List<Long> resultado;
+        if (ids != null && !ids.isEmpty()) {
+            resultado = new ArrayList<>(new LinkedHashSet<>(ids));
+        } else if (desde != null && hasta != null) {
+            // Se pide uno más del máximo solo para saber si el rango lo supera
+            resultado = boletaRepo.findIdsByFechaBetween(desde, hasta, Limit.of(maxBoletas + 1));
+        } else {
+            throw new IllegalArgumentException("Debe indicar una lista de boletas o un rango de fechas");
+        }
+
+        if (resultado.size() > maxBoletas) {
+            throw new IllegalArgumentException("Se pueden exportar como máximo " + maxBoletas + " boletas por solicitud");
+        }
+        return resultado;
+    }
+
+    /**
+     * Renderiza los PDFs en paralelo y los escribe en el ZIP a medida que se
+     * completan. Nunca hay más de maxEnVuelo PDFs en memoria, sea cual sea el
+     * número de boletas. Las boletas que fallan se listan en errores.txt
+     */
+    public void exportarZip(List<Long> ids, OutputStream out) throws IOException {
+        CompletionService<ArchivoPdf> completion = new ExecutorCompletionService<>(executor);
+        List<Future<ArchivoPdf>> pendientes = new ArrayList<>();
+        List<String> errores = new ArrayList<>();
+        Iterator<Long> siguientes = ids.iterator();
+        int enVuelo = 0;
+
+        try (ZipOutputStream zip = new ZipOutputStream(StreamUtils.nonClosing(out))) {
+            while (enVuelo < maxEnVuelo && siguientes.hasNext()) {
+                pendientes.add(enviar(completion, siguientes.next()));
+                enVuelo++;
+            }
+
+            while (enVuelo > 0) {
+                Future<ArchivoPdf> terminado = completion.take();
+                enVuelo--;
+                pendientes.remove(terminado);
+                if (siguientes.hasNext()) {
+                    pendientes.add(enviar(completion, siguientes.next()));
+                    enVuelo++;
+                }
+
+                ArchivoPdf archivo = terminado.get();
+                if (archivo.contenido() == null) {
+                    errores.add("boleta_" + archivo.boletaId() + ".pdf: " + archivo.error());
+                    continue;
+                }
+
+                escribirSinComprimir(zip, "boleta_" + archivo.boletaId() + ".pdf", archivo.contenido());
+            }
+
+            if (!errores.isEmpty()) {
+                zip.putNextEntry(new ZipEntry("errores.txt"));
+                zip.write(String.join("\n", errores).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+
+            log.info("Exportadas {} boletas en ZIP ({} con error)", ids.size() - errores.size(), errores.size());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Exportación interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error al exportar boletas: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            // Si el cliente corta la descarga no seguimos renderizando
+            pendientes.forEach(pendiente -> pendiente.cancel(true));
+        }
+    }
+
+    /**
+     * Los PDF ya vienen comprimidos: se guardan tal cual (STORED), sin pasar
+     * por el deflater, lo que obliga a indicar tamaño y CRC antes de escribir
+     */
+    private static void escribirSinComprimir(ZipOutputStream zip, String nombre, byte[] contenido) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(contenido);
+
+        ZipEntry entrada = new ZipEntry(nombre);
+        entrada.setMethod(ZipEntry.STORED);
+        entrada.setSize(contenido.length);
+        entrada.setCompressedSize(contenido.length);
+        entrada.setCrc(crc.getValue());
+
+        zip.putNextEntry(entrada);
+        zip.write(contenido);
+        zip.closeEntry();
+    }
+
+    private Future<ArchivoPdf> enviar(CompletionService<ArchivoPdf> completion, Long boletaId) {
+        return completion.submit(() -> {
+            try {
+                return new ArchivoPdf(boletaId, boletaPdfService.obtenerPdfSinCachear(boletaId), null);
+            } catch (RuntimeException e) {
+                return new ArchivoPdf(boletaId, null, e.getMessage());
+            }
+        });
+    }
+
+    private record ArchivoPdf(Long boletaId, byte[] contenido, String error) {
+    }
+}
@@ -0,0 +1,168 @@
+package com.tienda.microservicio.service;
+
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tienda.microservicio.model.Boleta;
+import com.tienda.microservicio.model.BoletaPdf;
+import com.tienda.microservicio.repository.BoletaPdfRepository;
+import com.tienda.microservicio.repository.BoletaRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BoletaPdfService {
+
+    private final BoletaRepository boletaRepo;
+
+    private final BoletaPdfRepository boletaPdfRepo;
+
+    private final PDFService pdfService;
+
+    private final MeterRegistry meterRegistry;
+
+    // Presupuesto en bytes de la caché de PDFs en memoria
+    @Value("${boleta.pdf.cache.max-bytes:64MB}")
+    private DataSize cacheMaxBytes = DataSize.ofMegabytes(64);
+
+    // Se incrementa cuando cambia el formato del PDF para invalidar los ETag emitidos
+    @Value("${boleta.pdf.version:1}")
+    private int versionPdf = 1;
+
+    private Cache<Long, byte[]> pdfCache;
+
+    @PostConstruct
+    void inicializarCache() {
+        pdfCache = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxBytes.toBytes())
+                .weigher((Long boletaId, byte[] contenido) -> contenido.length)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, pdfCache, "boleta.pdf");
+        Gauge.builder("boleta.pdf.cache.bytes", this, BoletaPdfService::bytesEnCache)
+                .description("Bytes de PDFs de boletas retenidos en memoria")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Devuelve el PDF de la boleta. Las boletas emitidas no cambian, así que la
+     * copia renderizada se guarda en memoria y la comparten todas las descargas.
+     * Si no está en memoria se usa el pre-renderizado o, si el consumidor aún no
+     * lo ha generado, uno renderizado en el momento
+     */
+    @Transactional(readOnly = true)
+    public byte[] obtenerPdf(Long boletaId) {
+        return pdfCache.get(boletaId, id -> obtenerAlmacenado(id)
+                .orElseGet(() -> pdfService.generarBoletaPDF(cargarBoleta(id))));
+    }
+
+    /**
+     * Igual que obtenerPdf pero sin pasar por la caché en memoria, para que las
+     * exportaciones masivas no desplacen a los PDFs más descargados
+     */
+    @Transactional(readOnly = true)
+    public byte[] obtenerPdfSinCachear(Long boletaId) {
+        byte[] enCache = pdfCache.getIfPresent(boletaId);
+        if (enCache != null) {
+            return enCache;
+        }
+        return obtenerAlmacenado(boletaId)
+                .orElseGet(() -> pdfService.generarBoletaPDF(cargarBoleta(boletaId)));
+    }
+
+    /**
+     * Con presupuesto 0 no se guardan PDFs en memoria y las descargas se
+     * renderizan directamente sobre la respuesta
+     */
+    public boolean isCacheHabilitado() {
+        return cacheMaxBytes.toBytes() > 0;
+    }
+
+    /**
+     * Renderiza el PDF de una boleta ya cargada directamente sobre el stream
+     */
+    public void escribirPdf(Boleta boleta, OutputStream out) {
+        pdfService.generarBoletaPDF(boleta, out);
+    }
+
+    /**
+     * PDF pre-renderizado, si existe y tiene el formato actual
+     */
+    @Transactional(readOnly = true)
+    public Optional<byte[]> obtenerAlmacenado(Long boletaId) {
+        return boletaPdfRepo.findById(boletaId)
+                .filter(this::esVersionActual)
+                .map(BoletaPdf::getContenido);
+    }
+
+    /**
+     * Si la boleta existe; el PDF en memoria ya lo prueba sin consultar la base
+     */
+    @Transactional(readOnly = true)
+    public boolean existe(Long boletaId) {
+        return pdfCache.getIfPresent(boletaId) != null || boletaRepo.existsById(boletaId);
+    }
+
+    /**
+     * ETag fuerte del PDF de una boleta. Depende solo del id y de la versión del
+     * formato, por lo que se puede responder 304 sin cargar ni renderizar nada
+     */
+    public String etag(Long boletaId) {
+        return "\"boleta-" + boletaId + "-v" + versionPdf + "\"";
+    }
+
+    /**
+     * Renderiza y guarda el PDF de una boleta recién creada (o lo vuelve a
+     * renderizar si el guardado es de una versión anterior del formato)
+     */
+    @Transactional
+    public void prerenderizar(Long boletaId) {
+        Optional<BoletaPdf> existente = boletaPdfRepo.findById(boletaId);
+        if (existente.filter(this::esVersionActual).isPresent()) {
+            log.debug("PDF de la boleta {} ya pre-renderizado", boletaId);
+            return;
+        }
+
+        byte[] contenido = pdfService.generarBoletaPDF(cargarBoleta(boletaId));
+        boletaPdfRepo.save(new BoletaPdf(boletaId, contenido, LocalDateTime.now(), versionPdf));
+
+        log.info("PDF de la boleta {} pre-renderizado ({} bytes)", boletaId, contenido.length);
+    }
+
+    /**
+     * Boleta con sus detalles, lista para renderizar fuera de la sesión
+     */
+    @Transactional(readOnly = true)
+    public Boleta cargarBoleta(Long boletaId) {
+        return boletaRepo.findConDetallesById(boletaId)
+                .orElseThrow(() -> new RuntimeException("Boleta no encontrada"));
+    }
+
+    private boolean esVersionActual(BoletaPdf pdf) {
+        return Objects.equals(pdf.getVersionFormato(), versionPdf);
+    }
+
+    private double bytesEnCache() {
+        return pdfCache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+}
@@ -2,17 +2,21 @@ package com.tienda.microservicio.service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.tienda.microservicio.dto.BoletaCreadaEvent;
 import com.tienda.microservicio.model.Boleta;
 import com.tienda.microservicio.model.DetalleBoleta;
 import com.tienda.microservicio.model.Producto;
 import com.tienda.microservicio.model.ProductoCompra;
 import com.tienda.microservicio.repository.BoletaRepository;
-import com.tienda.microservicio.repository.ProductoRepository;
 
 import lombok.RequiredArgsConstructor;
 
@@ -21,46 +25,78 @@ import lombok.RequiredArgsConstructor;
 public class CompraServiceImpl implements CompraService {
 
     @Autowired
-    private ProductoRepository productoRepo;
+    private ProductoService productoService;
 
     @Autowired
     private BoletaRepository boletaRepo;
 
     @Autowired
-    private PDFService pdfService;
+    private BoletaPdfService boletaPdfService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     @Override
+    @Transactional
     public Boleta procesarCompra(List<ProductoCompra> carrito) {
 
         Boleta boleta = new Boleta();
         boleta.setFecha(LocalDateTime.now());
-        List<DetalleBoleta> detalles = new ArrayList<>();
+
+        List<DetalleBoleta> detalles = cotizarCarrito(carrito, boleta);
 
         double total = 0;
+        for (DetalleBoleta detalle : detalles) {
+            total += detalle.getPrecioUnitario() * detalle.getCantidad();
+        }
+
+        boleta.setDetalles(detalles);
+        boleta.setTotal(total);
+
+        Boleta guardada = boletaRepo.save(boleta);
+
+        // Se publica en RabbitMQ tras el commit para pre-renderizar el PDF
+        eventPublisher.publishEvent(new BoletaCreadaEvent(guardada.getId()));
+
+        return guardada;
+    }
+
+    @Override
+    public byte[] generarPDFBoleta(Long boletaId) {
+        return boletaPdfService.obtenerPdf(boletaId);
+    }
+
+    // Agrupa las líneas repetidas del carrito y obtiene todos los productos de una
+    // vez desde la caché del catálogo (los que falten se consultan en lote)
+    List<DetalleBoleta> cotizarCarrito(List<ProductoCompra> carrito, Boleta boleta) {
+        Map<Long, Integer> cantidades = new LinkedHashMap<>();
         for (ProductoCompra item : carrito) {
-            Producto producto = productoRepo.findById(item.getIdProducto())
-                    .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+            cantidades.merge(item.getIdProducto(), item.getCantidad(), Integer::sum);
+        }
+
+        Map<Long, Producto> productos = productoService.getProductsByIds(cantidades.keySet());
+
+        List<Long> faltantes = new ArrayList<>();
+        List<DetalleBoleta> detalles = new ArrayList<>(cantidades.size());
+        for (Map.Entry<Long, Integer> entry : cantidades.entrySet()) {
+            Producto producto = productos.get(entry.getKey());
+            if (producto == null) {
+                faltantes.add(entry.getKey());
+                continue;
+            }
 
             DetalleBoleta detalle = new DetalleBoleta();
             detalle.setProducto(producto);
-            detalle.setCantidad(item.getCantidad());
+            detalle.setCantidad(entry.getValue());
             detalle.setPrecioUnitario(producto.getPrecio());
             detalle.setBoleta(boleta);
-
             detalles.add(detalle);
-            total += producto.getPrecio() * item.getCantidad();
         }
 
-        boleta.setDetalles(detalles);
-        boleta.setTotal(total);
-
-        return boletaRepo.save(boleta);
-    }
+        if (!faltantes.isEmpty()) {
+            throw new RuntimeException("Productos no encontrados: " + faltantes);
+        }
 
-    @Override
-    public byte[] generarPDFBoleta(Long boletaId) {
-        Boleta boleta = boletaRepo.findById(boletaId)
-                .orElseThrow(() -> new RuntimeException("Boleta no encontrada"));
-        return pdfService.generarBoletaPDF(boleta);
+        return detalles;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,284 @@
+package com.tienda.microservicio.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Almacenamiento deduplicado por contenido en EFS. Cada contenido distinto se
+ * guarda una vez como blob (raiz/.blobs/ab/cd/sha256) y cada nombre lógico es
+ * un hard link a él, así que el propio sistema de archivos lleva la cuenta de
+ * referencias (nlink). Al borrar el último nombre se borra también el blob;
+ * los blobs que queden sin nombres (p. ej. borrados desde otra instancia) los
+ * recoge una limpieza periódica.
+ *
+ * Los nombres de un mismo contenido comparten inodo y, por tanto, fecha de
+ * modificación: cada subida la pone a la hora actual, así que Last-Modified
+ * (y el ETag, que se deriva de ella y del tamaño) es el de la subida más
+ * reciente de ese contenido, igual para todos sus nombres
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EfsDedupStore {
+
+    public static final String DIRECTORIO_BLOBS = ".blobs";
+
+    private final EfsPathResolver pathResolver;
+
+    private final EfsFileWriter fileWriter;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${aws.efs.dedup.enabled:false}")
+    private boolean habilitado;
+
+    // Temporales de subidas interrumpidas más antiguos que esto se borran en la limpieza
+    @Value("${aws.efs.dedup.edad-temporales:1h}")
+    private Duration edadTemporales = Duration.ofHours(1);
+
+    // Enlazar un nombre y liberar un blob sin nombres se excluyen por hash
+    private final ReentrantLock[] candados = new ReentrantLock[64];
+
+    // Blob de cada inodo, para encontrar el blob de un nombre al borrarlo sin recalcular el hash
+    private final Map<Object, Path> blobsPorInodo = new ConcurrentHashMap<>();
+
+    private Path directorioBlobs;
+
+    private Counter reutilizados;
+
+    private Counter bytesAhorrados;
+
+    @PostConstruct
+    void inicializar() {
+        for (int i = 0; i < candados.length; i++) {
+            candados[i] = new ReentrantLock();
+        }
+        if (!habilitado) {
+            return;
+        }
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("unix")) {
+            throw new IllegalStateException("La deduplicación de EFS necesita un sistema de archivos con hard links (unix)");
+        }
+
+        directorioBlobs = pathResolver.getRaiz().resolve(DIRECTORIO_BLOBS);
+        reutilizados = Counter.builder("efs.dedup.reused")
+                .description("Subidas enlazadas a un blob existente en lugar de escribirse")
+                .register(meterRegistry);
+        bytesAhorrados = Counter.builder("efs.dedup.bytes-saved")
+                .description("Bytes que no se escribieron en EFS gracias a la deduplicación")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    /**
+     * Guarda el archivo con el nombre indicado. El hash se calcula sobre el
+     * temporal local del multipart, así que un contenido repetido no llega a
+     * escribirse en EFS
+     */
+    public void guardar(MultipartFile file, Path destino) throws IOException {
+        String hash = sha256(file);
+        Path blob = rutaBlob(hash);
+
+        if (enlazar(blob, destino)) {
+            contarReutilizado(file);
+            return;
+        }
+
+        // No hay blob con ese contenido todavía. El temporal mantiene el blob con al menos
+        // otro nombre hasta que destino lo enlaza, así la limpieza no puede liberarlo entre medias
+        Files.createDirectories(blob.getParent());
+        Path temporal;
+        try (InputStream in = file.getInputStream()) {
+            temporal = fileWriter.escribirTemporal(in, blob.getParent());
+        }
+        try {
+            boolean publicado;
+            do {
+                publicado = publicarBlob(temporal, blob);
+            } while (!enlazar(blob, destino));
+            if (!publicado) {
+                contarReutilizado(file);
+            }
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    // link(2) no sobrescribe: si otra subida del mismo contenido publicó el blob antes,
+    // se conserva el suyo y este temporal se descarta
+    private boolean publicarBlob(Path temporal, Path blob) throws IOException {
+        try {
+            Files.createLink(blob, temporal);
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+        fileWriter.sincronizarDirectorio(blob.getParent());
+        return true;
+    }
+
+    // Enlaza destino al blob; false si el blob no existe (todavía o ya no)
+    private boolean enlazar(Path blob, Path destino) throws IOException {
+        ReentrantLock candado = candado(blob.getFileName().toString());
+        candado.lock();
+        try {
+            Files.createLink(destino, blob);
+            // Sin esto el nombre nuevo mostraría la fecha de la primera subida del contenido
+            Files.setLastModifiedTime(destino, FileTime.from(Instant.now()));
+            blobsPorInodo.putIfAbsent(Files.readAttributes(destino, BasicFileAttributes.class).fileKey(), blob);
+        } catch (NoSuchFileException e) {
+            if (Files.exists(blob)) {
+                // Lo que falta es el directorio de destino, no el blob
+                throw e;
+            }
+            return false;
+        } finally {
+            candado.unlock();
+        }
+        fileWriter.sincronizarDirectorio(destino.getParent());
+        return true;
+    }
+
+    private void contarReutilizado(MultipartFile file) {
+        reutilizados.increment();
+        bytesAhorrados.increment(file.getSize());
+    }
+
+    /**
+     * Identificador del inodo de un nombre, a leer antes de borrarlo
+     */
+    public Object inodo(Path filePath) throws IOException {
+        return Files.readAttributes(filePath, BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * Tras borrar un nombre, borra su blob si ya no le queda ningún otro
+     */
+    public void liberar(Object inodo) {
+        Path blob = inodo != null ? blobsPorInodo.get(inodo) : null;
+        if (blob == null) {
+            return;
+        }
+
+        ReentrantLock candado = candado(blob.getFileName().toString());
+        candado.lock();
+        try {
+            Map<String, Object> atributos = Files.readAttributes(blob, "unix:fileKey,nlink");
+            if (!inodo.equals(atributos.get("fileKey"))) {
+                // El blob se reescribió con otro inodo; el antiguo lo libera el sistema de archivos
+                blobsPorInodo.remove(inodo);
+            } else if ((Integer) atributos.get("nlink") <= 1) {
+                Files.delete(blob);
+                blobsPorInodo.remove(inodo);
+                log.info("Blob de EFS liberado: {}", blob.getFileName());
+            }
+        } catch (NoSuchFileException e) {
+            blobsPorInodo.remove(inodo);
+        } catch (IOException e) {
+            log.warn("No se pudo liberar el blob {}: {}", blob.getFileName(), e.getMessage());
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    // En segundo plano para no retrasar el arranque; esta pasada también carga qué inodo
+    // corresponde a cada blob, que liberar necesita para los nombres creados antes de arrancar
+    @EventListener(ApplicationReadyEvent.class)
+    public void limpiarAlArrancar() {
+        Thread hilo = new Thread(this::limpiar, "efs-limpieza-blobs");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    @Scheduled(initialDelayString = "${aws.efs.dedup.limpieza:1h}", fixedDelayString = "${aws.efs.dedup.limpieza:1h}")
+    public void limpiar() {
+        if (!habilitado || !Files.isDirectory(directorioBlobs)) {
+            return;
+        }
+
+        Instant limiteTemporales = Instant.now().minus(edadTemporales);
+        try {
+            Files.walkFileTree(directorioBlobs, new SimpleFileVisitor<>() {
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    if (EfsFileWriter.esTemporal(file.getFileName().toString())) {
+                        if (attributes.lastModifiedTime().toInstant().isBefore(limiteTemporales)) {
+                            Files.deleteIfExists(file);
+                        }
+                    } else if (attributes.isRegularFile()) {
+                        blobsPorInodo.put(attributes.fileKey(), file);
+                        liberar(attributes.fileKey());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                    if (e instanceof NoSuchFileException) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    throw e;
+                }
+            });
+        } catch (IOException e) {
+            log.error("Error en la limpieza de blobs de EFS: {}", e.getMessage());
+        }
+    }
+
+    private Path rutaBlob(String hash) {
+        return directorioBlobs.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private ReentrantLock candado(String hash) {
+        return candados[Math.floorMod(hash.hashCode(), candados.length)];
+    }
+
+    private static String sha256(MultipartFile file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
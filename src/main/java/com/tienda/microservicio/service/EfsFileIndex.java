@@ -0,0 +1,104 @@
+package com.tienda.microservicio.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+import com.tienda.microservicio.dto.EfsFileInfo;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Índice en memoria de los archivos del directorio de EFS, para listar y
+ * consultar sin un stat (un viaje NFS) por archivo y petición. Se carga con un
+ * escaneo completo, se mantiene con nuestras subidas, renombrados y borrados,
+ * y los cambios de terceros se recogen en el siguiente escaneo de reconciliación
+ */
+@Component
+@RequiredArgsConstructor
+public class EfsFileIndex {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, EfsFileInfo> archivos = new ConcurrentHashMap<>();
+
+    // Hasta el primer escaneo completo el índice no sabe qué falta y no debe usarse
+    private volatile boolean listo;
+
+    // Nombres modificados por nosotros mientras corre un escaneo; su resultado para ellos puede ser antiguo
+    private Set<String> tocadosDuranteEscaneo;
+
+    @PostConstruct
+    void inicializar() {
+        Gauge.builder("efs.index.archivos", archivos, Map::size)
+                .description("Archivos de EFS en el índice en memoria")
+                .register(meterRegistry);
+    }
+
+    public boolean isListo() {
+        return listo;
+    }
+
+    public EfsFileInfo obtener(String fileName) {
+        return archivos.get(fileName);
+    }
+
+    public List<EfsFileInfo> listar() {
+        return new ArrayList<>(archivos.values());
+    }
+
+    public synchronized void registrar(EfsFileInfo fileInfo) {
+        marcarTocado(fileInfo.getFileName());
+        archivos.put(fileInfo.getFileName(), fileInfo);
+    }
+
+    public synchronized void eliminar(String fileName) {
+        marcarTocado(fileName);
+        archivos.remove(fileName);
+    }
+
+    /**
+     * Llamar antes de empezar a leer el directorio
+     */
+    public synchronized void iniciarEscaneo() {
+        tocadosDuranteEscaneo = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Sustituye el contenido por el resultado del escaneo, salvo los nombres
+     * que cambiamos nosotros mientras corría, que ya están al día
+     */
+    public synchronized void aplicarEscaneo(Map<String, EfsFileInfo> encontrados) {
+        Set<String> tocados = tocadosDuranteEscaneo != null ? tocadosDuranteEscaneo : Set.of();
+
+        archivos.keySet().removeIf(fileName -> !encontrados.containsKey(fileName) && !tocados.contains(fileName));
+        encontrados.forEach((fileName, fileInfo) -> {
+            if (!tocados.contains(fileName)) {
+                archivos.put(fileName, fileInfo);
+            }
+        });
+
+        tocadosDuranteEscaneo = null;
+        listo = true;
+    }
+
+    /**
+     * Descarta un escaneo fallido; el índice conserva el contenido anterior
+     */
+    public synchronized void cancelarEscaneo() {
+        tocadosDuranteEscaneo = null;
+    }
+
+    private void marcarTocado(String fileName) {
+        if (tocadosDuranteEscaneo != null) {
+            tocadosDuranteEscaneo.add(fileName);
+        }
+    }
+}
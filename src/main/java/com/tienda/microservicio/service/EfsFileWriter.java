@@ -0,0 +1,174 @@
+package com.tienda.microservicio.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Escritura atómica de archivos en EFS: el contenido va a un temporal oculto
+ * en el mismo directorio y se publica con un rename, así que nadie ve archivos
+ * a medio escribir y una caída solo deja temporales, que se barren al
+ * arrancar. La durabilidad antes de confirmar la subida es configurable
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EfsFileWriter {
+
+    public static final String SUFIJO_TEMPORAL = ".efs-tmp";
+
+    // Nombre de temporal de longitud fija, sin el nombre original: un nombre de 255 bytes
+    // más el sufijo superaría el límite del sistema de archivos (ENAMETOOLONG)
+    private static final String PREFIJO_TEMPORAL = ".tmp-";
+
+    /**
+     * NONE: la caché de página decide cuándo llega a EFS; FILE: fsync del
+     * contenido antes del rename; FILE_AND_DIRECTORY: además fsync del
+     * directorio, para que el rename sobreviva a una caída
+     */
+    public enum PoliticaFsync {
+        NONE, FILE, FILE_AND_DIRECTORY
+    }
+
+    private final EfsPathResolver pathResolver;
+
+    @Value("${aws.efs.fsync:FILE}")
+    private PoliticaFsync politica = PoliticaFsync.FILE;
+
+    // Solo se barren temporales más antiguos que esto: otras instancias pueden estar escribiendo
+    @Value("${aws.efs.temporales.edad-minima:1h}")
+    private Duration edadMinima = Duration.ofHours(1);
+
+    /**
+     * Escribe el contenido completo en destino, reemplazándolo si existía
+     */
+    public void escribir(InputStream in, Path destino) throws IOException {
+        Path temporal = escribirTemporal(in, destino.getParent());
+        try {
+            publicar(temporal, destino);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * Escribe el contenido en un temporal de directorio, con fsync según la política
+     */
+    public Path escribirTemporal(InputStream in, Path directorio) throws IOException {
+        Path temporal = directorio.resolve(PREFIJO_TEMPORAL + UUID.randomUUID() + SUFIJO_TEMPORAL);
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            // No se cierra el stream: cerrarlo cerraría el canal antes del fsync
+            OutputStream out = Channels.newOutputStream(canal);
+            in.transferTo(out);
+            if (politica != PoliticaFsync.NONE) {
+                canal.force(true);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+        return temporal;
+    }
+
+    /**
+     * Publica el temporal con su nombre definitivo
+     */
+    public void publicar(Path temporal, Path destino) throws IOException {
+        Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+        sincronizarDirectorio(destino.getParent());
+    }
+
+    /**
+     * Fsync de un directorio cuyas entradas cambiaron, si la política lo pide
+     */
+    public void sincronizarDirectorio(Path directorio) throws IOException {
+        if (politica == PoliticaFsync.FILE_AND_DIRECTORY) {
+            try (FileChannel canal = FileChannel.open(directorio, StandardOpenOption.READ)) {
+                canal.force(true);
+            }
+        }
+    }
+
+    public static boolean esTemporal(String nombre) {
+        return nombre.endsWith(SUFIJO_TEMPORAL);
+    }
+
+    // En segundo plano para no retrasar el arranque con un recorrido completo de EFS
+    @EventListener(ApplicationReadyEvent.class)
+    public void barrerTemporalesAlArrancar() {
+        Thread hilo = new Thread(this::barrerTemporales, "efs-barrido-temporales");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Borra los temporales abandonados de la raíz y de los subdirectorios del
+     * layout fragmentado (los de .blobs los limpia EfsDedupStore)
+     */
+    void barrerTemporales() {
+        Path raiz = pathResolver.getRaiz();
+        if (!Files.isDirectory(raiz)) {
+            return;
+        }
+
+        Instant limite = Instant.now().minus(edadMinima);
+        AtomicInteger barridos = new AtomicInteger();
+        SimpleFileVisitor<Path> visitante = new SimpleFileVisitor<>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                if (esTemporal(file.getFileName().toString())
+                        && attributes.lastModifiedTime().toInstant().isBefore(limite)
+                        && Files.deleteIfExists(file)) {
+                    barridos.incrementAndGet();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        };
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(raiz)) {
+            for (Path entrada : stream) {
+                if (pathResolver.esDirectorioFragmento(entrada)) {
+                    Files.walkFileTree(entrada, Set.of(), pathResolver.getNiveles(), visitante);
+                } else if (esTemporal(entrada.getFileName().toString())) {
+                    Files.walkFileTree(entrada, Set.of(), 0, visitante);
+                }
+            }
+            log.info("Barrido de temporales de EFS: {} borrados", barridos.get());
+        } catch (IOException e) {
+            log.error("Error al barrer temporales de EFS: {}", e.getMessage());
+        }
+    }
+}
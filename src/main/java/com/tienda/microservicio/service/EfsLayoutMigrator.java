@@ -0,0 +1,189 @@
+package com.tienda.microservicio.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.tienda.microservicio.dto.EfsMigrationStatus;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Migración en línea del layout plano de EFS al fragmentado: mueve en paralelo
+ * los archivos de la raíz a su subdirectorio mientras la aplicación sigue
+ * atendiendo peticiones (EfsPathResolver los busca en ambos sitios hasta que
+ * termina). Cada movimiento es un enlace duro al destino seguido del borrado
+ * del origen, de modo que nunca se sobrescribe un archivo ya migrado
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EfsLayoutMigrator {
+
+    private final EfsPathResolver pathResolver;
+
+    private final EfsFileIndex fileIndex;
+
+    // Renames simultáneos; cada uno son varias operaciones NFS
+    @Value("${aws.efs.layout.migracion.paralelismo:8}")
+    private int paralelismo = 8;
+
+    private ExecutorService executor;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+
+    private final AtomicLong movidos = new AtomicLong();
+
+    private final AtomicLong conflictos = new AtomicLong();
+
+    private final AtomicLong errores = new AtomicLong();
+
+    private volatile Instant inicio;
+
+    private volatile Instant fin;
+
+    private volatile String mensaje = "Sin migraciones";
+
+    @PostConstruct
+    public void inicializarExecutor() {
+        AtomicInteger contador = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, paralelismo), tarea -> {
+            Thread hilo = new Thread(tarea, "efs-migracion-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    public void detenerExecutor() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Lanza la migración en segundo plano. Devuelve false si el layout no es
+     * fragmentado o ya hay una en curso
+     */
+    public boolean iniciar() {
+        if (!pathResolver.isFragmentado()) {
+            mensaje = "El layout fragmentado no está habilitado (aws.efs.layout.fragmentado)";
+            return false;
+        }
+        if (!enCurso.compareAndSet(false, true)) {
+            return false;
+        }
+
+        movidos.set(0);
+        conflictos.set(0);
+        errores.set(0);
+        inicio = Instant.now();
+        fin = null;
+        mensaje = "Migración en curso";
+
+        Thread hilo = new Thread(this::migrar, "efs-migracion");
+        hilo.setDaemon(true);
+        hilo.start();
+        return true;
+    }
+
+    public EfsMigrationStatus estado() {
+        return new EfsMigrationStatus(enCurso.get(), movidos.get(), conflictos.get(), errores.get(), inicio, fin,
+                mensaje);
+    }
+
+    private void migrar() {
+        // Acota las tareas pendientes para no encolar cientos de miles de rutas en memoria;
+        // recuperar todos los permisos al final equivale a esperar a que terminen
+        int maxPendientes = Math.max(1, paralelismo) * 4;
+        Semaphore pendientes = new Semaphore(maxPendientes);
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(pathResolver.getRaiz())) {
+            for (Path entrada : stream) {
+                if (pathResolver.esDirectorioFragmento(entrada) || EfsPathResolver.esArchivoInterno(entrada)) {
+                    continue;
+                }
+                pendientes.acquire();
+                executor.execute(() -> {
+                    try {
+                        mover(entrada);
+                    } finally {
+                        pendientes.release();
+                    }
+                });
+            }
+            pendientes.acquire(maxPendientes);
+            mensaje = "Migración terminada";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mensaje = "Migración interrumpida";
+        } catch (IOException | RuntimeException e) {
+            log.error("Error en la migración del layout de EFS: {}", e.getMessage());
+            mensaje = "Error en la migración: " + e.getMessage();
+        } finally {
+            pathResolver.revisarMigracion();
+            fin = Instant.now();
+            enCurso.set(false);
+            log.info("Migración del layout de EFS: {} movidos, {} conflictos, {} errores", movidos.get(),
+                    conflictos.get(), errores.get());
+        }
+    }
+
+    private void mover(Path origen) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(origen, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return;
+            }
+
+            String fileName = origen.getFileName().toString();
+            Path destino = pathResolver.ubicarNuevo(fileName);
+            // link(2) falla si el destino ya existe, a diferencia de rename(2), así que un
+            // archivo subido al destino entre tanto nunca se sobrescribe
+            try {
+                enlazar(destino, origen);
+            } catch (FileAlreadyExistsException e) {
+                log.warn("No se migra {}: ya existe {}", origen, destino);
+                conflictos.incrementAndGet();
+                return;
+            }
+            // Hasta que la migración termina, deleteFile y renameFile siguen resolviendo la ruta
+            // plana: si el origen ya no está, lo borraron o renombraron tras el enlace y la copia
+            // en el destino lo resucitaría
+            if (!Files.deleteIfExists(origen)) {
+                Files.deleteIfExists(destino);
+                return;
+            }
+            if (fileIndex.isListo()) {
+                fileIndex.registrar(AwsEfsService.toEfsFileInfo(destino, attributes));
+            }
+            movidos.incrementAndGet();
+
+        } catch (NoSuchFileException e) {
+            // Borrado o renombrado mientras tanto: ya no hay nada que mover
+        } catch (IOException e) {
+            log.warn("No se pudo migrar {}: {}", origen, e.getMessage());
+            errores.incrementAndGet();
+        }
+    }
+
+    // Separado para poder intercalar operaciones concurrentes en los tests
+    void enlazar(Path destino, Path origen) throws IOException {
+        Files.createLink(destino, origen);
+    }
+}
@@ -0,0 +1,177 @@
+package com.tienda.microservicio.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ubicación de cada archivo dentro del montaje de EFS. Con el layout plano
+ * todos los archivos están en la raíz; con el fragmentado cada archivo va en
+ * subdirectorios sacados del hash de su nombre (raiz/3f/a2/nombre), de modo
+ * que ningún directorio de NFS crece sin límite. Como depende solo del
+ * nombre, los archivos renombrados siguen encontrándose sin índice aparte.
+ * Mientras queden archivos en la raíz por migrar, se buscan también allí
+ */
+@Component
+@Slf4j
+public class EfsPathResolver {
+
+    public static final String ARCHIVO_SONDA = ".health_check";
+
+    @Value("${aws.efs.mount.path:/mnt/efs}")
+    private String efsMountPath;
+
+    @Value("${aws.efs.layout.fragmentado:false}")
+    private boolean fragmentado;
+
+    // Niveles de subdirectorios y caracteres hexadecimales por nivel (2 y 2 = 65536 directorios hoja)
+    @Value("${aws.efs.layout.niveles:2}")
+    private int niveles = 2;
+
+    @Value("${aws.efs.layout.ancho:2}")
+    private int ancho = 2;
+
+    private Path raiz;
+
+    private volatile boolean migracionPendiente;
+
+    @PostConstruct
+    void inicializar() {
+        if (niveles < 1 || ancho < 1 || niveles * ancho > 32) {
+            throw new IllegalStateException("Layout de EFS inválido: niveles=" + niveles + ", ancho=" + ancho);
+        }
+        raiz = Paths.get(efsMountPath);
+        revisarMigracion();
+    }
+
+    public Path getRaiz() {
+        return raiz;
+    }
+
+    public boolean isFragmentado() {
+        return fragmentado;
+    }
+
+    public int getNiveles() {
+        return niveles;
+    }
+
+    public boolean isMigracionPendiente() {
+        return migracionPendiente;
+    }
+
+    /**
+     * Ruta actual de un archivo existente (o donde estaría si no existe)
+     */
+    public Path ubicar(String fileName) {
+        if (!fragmentado) {
+            return raiz.resolve(fileName);
+        }
+
+        Path destino = rutaFragmentada(fileName);
+        if (migracionPendiente && !Files.exists(destino)) {
+            Path plano = raiz.resolve(fileName);
+            if (Files.exists(plano)) {
+                return plano;
+            }
+        }
+        return destino;
+    }
+
+    /**
+     * Ruta para escribir un archivo nuevo, creando sus subdirectorios si hace falta
+     */
+    public Path ubicarNuevo(String fileName) throws IOException {
+        Path destino = fragmentado ? rutaFragmentada(fileName) : raiz.resolve(fileName);
+        Files.createDirectories(destino.getParent());
+        return destino;
+    }
+
+    /**
+     * Si una entrada de la raíz es un directorio del layout fragmentado (solo por el nombre, sin stat)
+     */
+    public boolean esDirectorioFragmento(Path entrada) {
+        if (!fragmentado) {
+            return false;
+        }
+        String nombre = entrada.getFileName().toString();
+        if (nombre.length() != ancho) {
+            return false;
+        }
+        for (int i = 0; i < nombre.length(); i++) {
+            if (Character.digit(nombre.charAt(i), 16) < 0 || Character.isUpperCase(nombre.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Archivos de la propia aplicación que no son del usuario: la sonda de salud y los temporales de subida
+     */
+    public static boolean esArchivoInterno(Path entrada) {
+        String nombre = entrada.getFileName().toString();
+        return ARCHIVO_SONDA.equals(nombre) || EfsFileWriter.esTemporal(nombre);
+    }
+
+    /**
+     * Vuelve a comprobar si quedan archivos en la raíz; se llama al arrancar y al terminar una migración
+     */
+    public void revisarMigracion() {
+        if (!fragmentado) {
+            migracionPendiente = false;
+            return;
+        }
+
+        boolean pendiente = false;
+        if (Files.isDirectory(raiz)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(raiz)) {
+                for (Path entrada : stream) {
+                    if (!esDirectorioFragmento(entrada) && !esArchivoInterno(entrada) && Files.isRegularFile(entrada)) {
+                        pendiente = true;
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                // Ante la duda se siguen buscando los archivos también en la raíz
+                log.warn("No se pudo revisar la raíz de EFS: {}", e.getMessage());
+                pendiente = true;
+            }
+        }
+
+        migracionPendiente = pendiente;
+        if (pendiente) {
+            log.info("Layout fragmentado de EFS con archivos pendientes de migrar en {}", raiz);
+        }
+    }
+
+    Path rutaFragmentada(String fileName) {
+        String hash = hash(fileName);
+        Path directorio = raiz;
+        for (int nivel = 0; nivel < niveles; nivel++) {
+            directorio = directorio.resolve(hash.substring(nivel * ancho, (nivel + 1) * ancho));
+        }
+        return directorio.resolve(fileName);
+    }
+
+    private static String hash(String fileName) {
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            return HexFormat.of().formatHex(md5.digest(fileName.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.tienda.microservicio.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.tienda.microservicio.model.Boleta;
+import com.tienda.microservicio.model.ProductoCompra;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Recuerda el resultado de cada compra por su Idempotency-Key durante un
+ * tiempo limitado. Un reintento con la misma clave devuelve la boleta original
+ * sin volver a ejecutar la compra, y los duplicados concurrentes esperan a la
+ * ejecución en curso. Las claves se reparten en segmentos con su propio lock
+ */
+@Component
+@Slf4j
+public class IdempotenciaCompraStore {
+
+    @Value("${compra.idempotencia.segmentos:64}")
+    private int numeroSegmentos = 64;
+
+    @Value("${compra.idempotencia.ttl:24h}")
+    private Duration ttl = Duration.ofHours(24);
+
+    @Value("${compra.idempotencia.max-claves-por-segmento:1000}")
+    private int maxClavesPorSegmento = 1000;
+
+    // Tiempo máximo que un duplicado espera a la ejecución original
+    @Value("${compra.idempotencia.espera-maxima:30s}")
+    private Duration esperaMaxima = Duration.ofSeconds(30);
+
+    private Segmento[] segmentos;
+
+    /**
+     * Otra solicitud con la misma clave se está ejecutando todavía
+     */
+    public static class CompraEnCursoException extends RuntimeException {
+        public CompraEnCursoException(String clave) {
+            super("Compra con Idempotency-Key " + clave + " aún en curso");
+        }
+    }
+
+    /**
+     * La clave ya se usó con un carrito distinto
+     */
+    public static class ClaveReutilizadaException extends RuntimeException {
+        public ClaveReutilizadaException(String clave) {
+            super("Idempotency-Key reutilizada con un carrito distinto: " + clave);
+        }
+    }
+
+    @PostConstruct
+    void inicializar() {
+        segmentos = new Segmento[Math.max(1, numeroSegmentos)];
+        for (int i = 0; i < segmentos.length; i++) {
+            segmentos[i] = new Segmento();
+        }
+    }
+
+    /**
+     * Huella de un carrito: SHA-256 de sus líneas ordenadas por producto, así
+     * que no depende del orden de las líneas ni de hashCode()
+     */
+    public static String huella(List<ProductoCompra> carrito) {
+        StringBuilder canonico = new StringBuilder();
+        carrito.stream()
+                .sorted(Comparator.comparing(ProductoCompra::getIdProducto, Comparator.nullsFirst(Comparator.naturalOrder()))
+                        .thenComparingInt(ProductoCompra::getCantidad))
+                .forEach(linea -> canonico.append(linea.getIdProducto()).append(':').append(linea.getCantidad()).append('\n'));
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(canonico.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Ejecuta la compra una sola vez por clave. La huella identifica el
+     * contenido de la solicitud: reutilizar la clave con otro carrito es un error
+     */
+    public Boleta ejecutar(String clave, String huella, Supplier<Boleta> compra) {
+        Segmento segmento = segmentos[Math.floorMod(clave.hashCode(), segmentos.length)];
+        long ahora = System.nanoTime();
+
+        Entrada entrada;
+        boolean propia = false;
+        segmento.lock.lock();
+        try {
+            segmento.purgar(ahora);
+            entrada = segmento.entradas.get(clave);
+            if (entrada == null) {
+                entrada = new Entrada(new CompletableFuture<>(), huella, ahora + ttl.toNanos());
+                segmento.entradas.put(clave, entrada);
+                segmento.limitar(maxClavesPorSegmento);
+                propia = true;
+            }
+        } finally {
+            segmento.lock.unlock();
+        }
+
+        if (!entrada.huella.equals(huella)) {
+            throw new ClaveReutilizadaException(clave);
+        }
+
+        if (!propia) {
+            log.info("Compra duplicada para Idempotency-Key {}, se devuelve el resultado original", clave);
+            return esperar(clave, entrada.resultado);
+        }
+
+        try {
+            Boleta boleta = compra.get();
+            entrada.resultado.complete(boleta);
+            return boleta;
+        } catch (RuntimeException | Error e) {
+            entrada.resultado.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Pase lo que pase, los duplicados no se quedan esperando y, si la
+            // compra falló, la clave se libera para que un reintento pueda ejecutarla
+            entrada.resultado.completeExceptionally(new IllegalStateException("Compra interrumpida: " + clave));
+            if (entrada.resultado.isCompletedExceptionally()) {
+                segmento.lock.lock();
+                try {
+                    segmento.entradas.remove(clave, entrada);
+                } finally {
+                    segmento.lock.unlock();
+                }
+            }
+        }
+    }
+
+    private Boleta esperar(String clave, CompletableFuture<Boleta> resultado) {
+        try {
+            return resultado.get(esperaMaxima.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new CompraEnCursoException(clave);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompraEnCursoException(clave);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static final class Entrada {
+        private final CompletableFuture<Boleta> resultado;
+        private final String huella;
+        private final long expiraEn;
+
+        private Entrada(CompletableFuture<Boleta> resultado, String huella, long expiraEn) {
+            this.resultado = resultado;
+            this.huella = huella;
+            this.expiraEn = expiraEn;
+        }
+    }
+
+    private static final class Segmento {
+        private final ReentrantLock lock = new ReentrantLock();
+
+        // En orden de inserción: como el TTL es fijo, las más antiguas expiran primero
+        private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>();
+
+        private void purgar(long ahora) {
+            Iterator<Entrada> it = entradas.values().iterator();
+            while (it.hasNext()) {
+                Entrada entrada = it.next();
+                if (entrada.expiraEn - ahora > 0) {
+                    break;
+                }
+                // Una compra en curso no se olvida aunque haya expirado: su clave seguiría reservada
+                if (entrada.resultado.isDone()) {
+                    it.remove();
+                }
+            }
+        }
+
+        // Descarta las más antiguas ya terminadas; las compras en curso nunca se descartan
+        private void limitar(int maximo) {
+            Iterator<Map.Entry<String, Entrada>> it = entradas.entrySet().iterator();
+            while (entradas.size() > maximo && it.hasNext()) {
+                if (it.next().getValue().resultado.isDone()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+}
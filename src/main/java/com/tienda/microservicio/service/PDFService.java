@@ -1,13 +1,26 @@
 package com.tienda.microservicio.service;
 
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.format.DateTimeFormatter;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
 
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.pdf.CompressionConstants;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.WriterProperties;
 import com.itextpdf.layout.Document;
+import com.itextpdf.layout.Style;
 import com.itextpdf.layout.element.Cell;
 import com.itextpdf.layout.element.Paragraph;
 import com.itextpdf.layout.element.Table;
@@ -19,65 +32,128 @@ import com.tienda.microservicio.model.DetalleBoleta;
 @Service
 public class PDFService {
 
+    // Recursos inmutables compartidos entre todos los renderizados
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    private static final float[] ANCHOS_COLUMNAS = { 3f, 1f, 2f, 2f };
+
+    private static final String[] ENCABEZADOS = { "Producto", "Cantidad", "Precio Unit.", "Subtotal" };
+
+    private static final Style ESTILO_TITULO = new Style()
+            .setFontSize(20)
+            .setBold()
+            .setTextAlignment(TextAlignment.CENTER);
+
+    private static final Style ESTILO_ENCABEZADO = new Style().setBold();
+
+    private static final Style ESTILO_TOTAL = new Style()
+            .setFontSize(16)
+            .setBold()
+            .setTextAlignment(TextAlignment.RIGHT);
+
+    // El programa de fuente se parsea una vez; cada documento solo crea su PdfFont
+    private static final FontProgram FUENTE = crearFuente();
+
+    // Nivel zlib de los streams (-1 = por defecto, 1 = más rápido, 9 = más compacto)
+    @Value("${pdf.compression.level:-1}")
+    private int nivelCompresion = CompressionConstants.DEFAULT_COMPRESSION;
+
+    // Compresión completa: también agrupa los objetos y la tabla xref en streams
+    @Value("${pdf.full-compression:false}")
+    private boolean compresionCompleta = false;
+
     public byte[] generarBoletaPDF(Boleta boleta) {
+        int detalles = boleta.getDetalles() == null ? 0 : boleta.getDetalles().size();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(4096 + detalles * 128);
+        generarBoletaPDF(boleta, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Escribe el PDF de la boleta directamente en el stream indicado, sin
+     * generar un byte[] intermedio. El stream no se cierra
+     */
+    public void generarBoletaPDF(Boleta boleta, OutputStream out) {
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            PdfWriter writer = new PdfWriter(baos);
+            WriterProperties propiedades = new WriterProperties()
+                    .setCompressionLevel(nivelCompresion)
+                    .setFullCompressionMode(compresionCompleta);
+            PdfWriter writer = new PdfWriter(StreamUtils.nonClosing(out), propiedades);
             PdfDocument pdfDoc = new PdfDocument(writer);
             Document document = new Document(pdfDoc);
+            document.setFont(PdfFontFactory.createFont(FUENTE, PdfEncodings.WINANSI));
 
             // Título
-            Paragraph titulo = new Paragraph("BOLETA DE VENTA")
-                    .setFontSize(20)
-                    .setBold()
-                    .setTextAlignment(TextAlignment.CENTER);
-            document.add(titulo);
+            document.add(new Paragraph("BOLETA DE VENTA").addStyle(ESTILO_TITULO));
 
             // Información de la boleta
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
             Paragraph info = new Paragraph()
                     .add("Boleta N°: " + boleta.getId() + "\n")
-                    .add("Fecha: " + boleta.getFecha().format(formatter))
+                    .add("Fecha: " + FORMATO_FECHA.format(boleta.getFecha()))
                     .setMarginTop(20)
                     .setMarginBottom(20);
             document.add(info);
 
             // Tabla de productos
-            float[] columnWidths = { 3f, 1f, 2f, 2f };
-            Table table = new Table(UnitValue.createPercentArray(columnWidths))
+            Table table = new Table(UnitValue.createPercentArray(ANCHOS_COLUMNAS))
                     .setWidth(UnitValue.createPercentValue(100));
 
             // Headers
-            table.addHeaderCell(new Cell().add(new Paragraph("Producto").setBold()));
-            table.addHeaderCell(new Cell().add(new Paragraph("Cantidad").setBold()));
-            table.addHeaderCell(new Cell().add(new Paragraph("Precio Unit.").setBold()));
-            table.addHeaderCell(new Cell().add(new Paragraph("Subtotal").setBold()));
+            for (String encabezado : ENCABEZADOS) {
+                table.addHeaderCell(new Cell().add(new Paragraph(encabezado).addStyle(ESTILO_ENCABEZADO)));
+            }
 
             // Detalles
+            StringBuilder buffer = new StringBuilder(24);
             for (DetalleBoleta detalle : boleta.getDetalles()) {
                 table.addCell(new Cell().add(new Paragraph(detalle.getProducto().getNombre())));
-                table.addCell(new Cell().add(new Paragraph(String.valueOf(detalle.getCantidad()))));
-                table.addCell(new Cell().add(new Paragraph(String.format("$%.2f", detalle.getPrecioUnitario()))));
-                table.addCell(new Cell().add(new Paragraph(String.format("$%.2f",
-                        detalle.getPrecioUnitario() * detalle.getCantidad()))));
+                table.addCell(new Cell().add(new Paragraph(Integer.toString(detalle.getCantidad()))));
+                table.addCell(new Cell().add(new Paragraph(
+                        formatearMonto(buffer, detalle.getPrecioUnitario()))));
+                table.addCell(new Cell().add(new Paragraph(
+                        formatearMonto(buffer, detalle.getPrecioUnitario() * detalle.getCantidad()))));
             }
 
             document.add(table);
 
             // Total
             Paragraph total = new Paragraph()
-                    .add("TOTAL: $" + String.format("%.2f", boleta.getTotal()))
-                    .setFontSize(16)
-                    .setBold()
-                    .setTextAlignment(TextAlignment.RIGHT)
+                    .add("TOTAL: " + formatearMonto(buffer, boleta.getTotal()))
+                    .addStyle(ESTILO_TOTAL)
                     .setMarginTop(20);
             document.add(total);
 
             document.close();
-            return baos.toByteArray();
 
         } catch (Exception e) {
             throw new RuntimeException("Error al generar PDF: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    // Equivalente a String.format(Locale.ROOT, "$%.2f", valor) sin el coste del parser de formato.
+    // Como String.format, redondea HALF_UP sobre la representación decimal del double (1.005 -> 1.01);
+    // Math.round(valor * 100) redondearía el binario (1.00499...) y daría 1.00
+    static String formatearMonto(StringBuilder buffer, double valor) {
+        long centavos = BigDecimal.valueOf(Math.abs(valor)).setScale(2, RoundingMode.HALF_UP)
+                .unscaledValue().longValue();
+        buffer.setLength(0);
+        buffer.append('$');
+        if (valor < 0 && centavos != 0) {
+            buffer.append('-');
+        }
+        buffer.append(centavos / 100).append('.');
+        long resto = centavos % 100;
+        if (resto < 10) {
+            buffer.append('0');
+        }
+        return buffer.append(resto).toString();
+    }
+
+    private static FontProgram crearFuente() {
+        try {
+            return FontProgramFactory.createFont(StandardFonts.HELVETICA);
+        } catch (Exception e) {
+            throw new IllegalStateException("No se pudo cargar la fuente de las boletas", e);
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package com.tienda.microservicio.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.stereotype.Service;
 
+import com.tienda.microservicio.dto.ProductoPage;
 import com.tienda.microservicio.model.Producto;
 
 @Service
@@ -11,6 +16,12 @@ public interface ProductoService {
 
     List<Producto> getAllProducts();
 
+    ProductoPage getProductsPage(Long cursor, Integer size);
+
+    void exportProducts(OutputStream out) throws IOException;
+
+    Map<Long, Producto> getProductsByIds(Collection<Long> ids);
+
     Producto createProduct(Producto producto);
 
 }
@@ -1,12 +1,36 @@
 package com.tienda.microservicio.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.tienda.microservicio.dto.ProductoPage;
 import com.tienda.microservicio.model.Producto;
 import com.tienda.microservicio.repository.ProductoRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 
 //List<Producto> getAllProducts();
@@ -17,16 +41,168 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class ProductoServiceImpl implements ProductoService {
 
+    private static final String CLAVE_CATALOGO = "catalogo";
+
+    private static final String SQL_EXPORTACION = "SELECT id, nombre, precio FROM producto ORDER BY id";
+
     private final ProductoRepository productoRepository;
 
+    private final MeterRegistry meterRegistry;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${productos.cache.max-size:10000}")
+    private long maxSize = 10000;
+
+    @Value("${productos.cache.expire-after-write:10m}")
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+    @Value("${productos.cache.refresh-after-write:5m}")
+    private Duration refreshAfterWrite = Duration.ofMinutes(5);
+
+    // Oracle admite como máximo 1000 elementos en una cláusula IN
+    @Value("${productos.consulta.tamano-lote:500}")
+    private int tamanoLote = 500;
+
+    @Value("${productos.paginacion.tamano-defecto:50}")
+    private int tamanoPaginaDefecto = 50;
+
+    @Value("${productos.paginacion.tamano-maximo:500}")
+    private int tamanoPaginaMaximo = 500;
+
+    // Filas que el driver trae por cada viaje al leer el cursor de exportación
+    @Value("${productos.export.fetch-size:500}")
+    private int exportFetchSize = 500;
+
+    // Productos por id, usado por el checkout
+    private LoadingCache<Long, Producto> productosPorId;
+
+    // Copia inmutable del catálogo completo, usada por el listado
+    private LoadingCache<String, List<Producto>> catalogo;
+
+    @PostConstruct
+    void inicializarCaches() {
+        productosPorId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .refreshAfterWrite(refreshAfterWrite)
+                .recordStats()
+                .build(new CacheLoader<Long, Producto>() {
+                    @Override
+                    public Producto load(Long id) {
+                        return productoRepository.findById(id).orElse(null);
+                    }
+
+                    @Override
+                    public Map<Long, Producto> loadAll(Set<? extends Long> ids) {
+                        return cargarEnLotes(ids);
+                    }
+                });
+
+        catalogo = Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(expireAfterWrite)
+                .refreshAfterWrite(refreshAfterWrite)
+                .recordStats()
+                .build(clave -> cargarCatalogo());
+
+        CaffeineCacheMetrics.monitor(meterRegistry, productosPorId, "productos");
+        CaffeineCacheMetrics.monitor(meterRegistry, catalogo, "productos.catalogo");
+    }
+
     @Override
     public List<Producto> getAllProducts() {
-        return productoRepository.findAll();
+        return catalogo.get(CLAVE_CATALOGO);
+    }
+
+    @Override
+    public ProductoPage getProductsPage(Long cursor, Integer size) {
+        int tamano = size == null ? tamanoPaginaDefecto : Math.min(Math.max(size, 1), tamanoPaginaMaximo);
+        long desde = cursor == null ? Long.MIN_VALUE : cursor;
+
+        // Se pide un elemento extra para saber si existe una página siguiente
+        List<Producto> productos = productoRepository.findByIdGreaterThanOrderByIdAsc(desde, Limit.of(tamano + 1));
+
+        boolean hasMore = productos.size() > tamano;
+        if (hasMore) {
+            productos = productos.subList(0, tamano);
+        }
+        Long nextCursor = hasMore ? productos.get(productos.size() - 1).getId() : null;
+
+        return new ProductoPage(productos, nextCursor, hasMore);
+    }
+
+    // Escribe el catálogo completo como NDJSON a medida que se lee del cursor JDBC,
+    // sin cargar la tabla en memoria
+    @Override
+    public void exportProducts(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.setRootValueSeparator(null);
+
+        RowCallbackHandler escritor = (ResultSet rs) -> {
+            try {
+                generator.writeObject(new Producto(rs.getLong("id"), rs.getString("nombre"), rs.getDouble("precio")));
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        try {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(SQL_EXPORTACION,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(exportFetchSize);
+                return ps;
+            }, escritor);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        generator.flush();
+    }
+
+    @Override
+    public Map<Long, Producto> getProductsByIds(Collection<Long> ids) {
+        return productosPorId.getAll(ids);
     }
 
     @Override
     public Producto createProduct(Producto producto) {
-        return productoRepository.save(producto);
+        Producto guardado = productoRepository.save(producto);
+        productosPorId.put(guardado.getId(), guardado);
+        catalogo.invalidateAll();
+        return guardado;
+    }
+
+    private List<Producto> cargarCatalogo() {
+        List<Producto> productos = List.copyOf(productoRepository.findAll());
+
+        // Aprovechamos la lectura completa para precargar la caché por id
+        Map<Long, Producto> porId = new HashMap<>(productos.size() * 2);
+        for (Producto producto : productos) {
+            porId.put(producto.getId(), producto);
+        }
+        productosPorId.putAll(porId);
+
+        return productos;
+    }
+
+    private Map<Long, Producto> cargarEnLotes(Collection<? extends Long> ids) {
+        List<Long> pendientes = new ArrayList<>(ids);
+        Map<Long, Producto> productos = new HashMap<>(pendientes.size() * 2);
+        int lote = Math.max(1, tamanoLote);
+
+        for (int desde = 0; desde < pendientes.size(); desde += lote) {
+            List<Long> idsLote = pendientes.subList(desde, Math.min(desde + lote, pendientes.size()));
+            for (Producto producto : productoRepository.findAllById(idsLote)) {
+                productos.put(producto.getId(), producto);
+            }
+        }
+
+        return productos;
     }
 
 }
@@ -0,0 +1,176 @@
+package com.tienda.microservicio.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.tienda.microservicio.dto.BatchDeleteResponse;
+import com.tienda.microservicio.dto.BatchUploadResponse;
+import com.tienda.microservicio.dto.UploadResponse;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+
+/**
+ * Operaciones sobre varios objetos en una sola petición: borrado con
+ * DeleteObjects y subida de varios archivos con paralelismo acotado
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class S3BatchService {
+
+    // Máximo de claves que admite DeleteObjects por llamada
+    private static final int MAX_CLAVES_POR_BORRADO = 1000;
+
+    private final S3Client s3Client;
+
+    private final AwsS3Service awsS3Service;
+
+    private final S3MetadataCache metadataCache;
+
+    private final S3DiskCache diskCache;
+
+    @Value("${aws.s3.bucket.name}")
+    private String bucketName;
+
+    // Archivos subiéndose a la vez (entre todas las peticiones)
+    @Value("${aws.s3.batch.paralelismo:4}")
+    private int paralelismo = 4;
+
+    // Mismo límite por archivo que la subida individual
+    @Value("${spring.servlet.multipart.max-file-size:50MB}")
+    private DataSize tamanoMaximo = DataSize.ofMegabytes(50);
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void inicializarExecutor() {
+        AtomicInteger contador = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, paralelismo), tarea -> {
+            Thread hilo = new Thread(tarea, "s3-batch-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    void detenerExecutor() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Elimina las claves en lotes de hasta 1000 y devuelve el resultado por clave
+     */
+    public BatchDeleteResponse deleteFiles(List<String> fileNames) {
+        List<String> claves = new ArrayList<>(new LinkedHashSet<>(fileNames));
+        List<String> eliminadas = new ArrayList<>();
+        Map<String, String> errores = new LinkedHashMap<>();
+
+        for (int desde = 0; desde < claves.size(); desde += MAX_CLAVES_POR_BORRADO) {
+            List<String> lote = claves.subList(desde, Math.min(desde + MAX_CLAVES_POR_BORRADO, claves.size()));
+            borrarLote(lote, eliminadas, errores);
+        }
+
+        log.info("Borrado en lote: {} eliminados, {} con error", eliminadas.size(), errores.size());
+        return new BatchDeleteResponse(eliminadas, errores, errores.isEmpty());
+    }
+
+    /**
+     * Sube varios archivos en paralelo; el resultado conserva el orden de entrada
+     */
+    public BatchUploadResponse uploadFiles(List<MultipartFile> files) {
+        List<Future<UploadResponse>> tareas = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            tareas.add(executor.submit(() -> subir(file)));
+        }
+
+        List<UploadResponse> resultados = new ArrayList<>(files.size());
+        for (Future<UploadResponse> tarea : tareas) {
+            resultados.add(esperar(tarea));
+        }
+
+        int correctas = (int) resultados.stream().filter(UploadResponse::isSuccess).count();
+        return new BatchUploadResponse(resultados, correctas, resultados.size() - correctas,
+                correctas == resultados.size());
+    }
+
+    private void borrarLote(List<String> lote, List<String> eliminadas, Map<String, String> errores) {
+        DeleteObjectsRequest request = DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(delete -> delete
+                        .objects(lote.stream().map(clave -> ObjectIdentifier.builder().key(clave).build()).toList())
+                        // En modo quiet S3 solo devuelve las claves con error
+                        .quiet(true))
+                .build();
+
+        Map<String, String> erroresLote = new LinkedHashMap<>();
+        try {
+            DeleteObjectsResponse response = s3Client.deleteObjects(request);
+            for (S3Error error : response.errors()) {
+                erroresLote.put(error.key(), error.code() + ": " + error.message());
+            }
+        } catch (SdkException e) {
+            // También errores de cliente (timeout, conexión): los lotes anteriores ya se borraron
+            // y su resultado debe devolverse, así que solo este lote se marca como fallido
+            log.error("Error de S3 al borrar un lote de {} claves: {}", lote.size(), e.getMessage());
+            lote.forEach(clave -> erroresLote.put(clave, "Error de S3: " + e.getMessage()));
+        }
+
+        for (String clave : lote) {
+            if (erroresLote.containsKey(clave)) {
+                metadataCache.invalidar(clave);
+                errores.put(clave, erroresLote.get(clave));
+            } else {
+                metadataCache.marcarAusente(clave);
+                eliminadas.add(clave);
+            }
+            diskCache.invalidar(clave);
+        }
+    }
+
+    // Mismas validaciones que la subida individual
+    private UploadResponse subir(MultipartFile file) {
+        if (file.isEmpty()) {
+            return new UploadResponse("Archivo vacío: " + file.getOriginalFilename(), null, null, 0, false);
+        }
+        if (file.getSize() > tamanoMaximo.toBytes()) {
+            return new UploadResponse("El archivo es demasiado grande. Máximo " + tamanoMaximo.toMegabytes()
+                    + "MB permitido: " + file.getOriginalFilename(), null, null, 0, false);
+        }
+        return awsS3Service.uploadFile(file);
+    }
+
+    private UploadResponse esperar(Future<UploadResponse> tarea) {
+        try {
+            return tarea.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new UploadResponse("Subida interrumpida", null, null, 0, false);
+        } catch (ExecutionException e) {
+            log.error("Error en subida en lote: {}", e.getCause().getMessage());
+            return new UploadResponse("Error interno del servidor: " + e.getCause().getMessage(),
+                    null, null, 0, false);
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.tienda.microservicio.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.tienda.microservicio.dto.S3FileDownload;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.Abortable;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Caché en disco local (o en el montaje de EFS) de los objetos más
+ * descargados. Cada copia se valida contra el ETag de la caché de metadatos
+ * antes de servirla y el total de bytes está acotado. Un fallo no espera a
+ * la copia: el cliente recibe el objeto de S3 según llega y lo leído se va
+ * copiando a disco; solo una descarga por clave llena la caché a la vez
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class S3DiskCache {
+
+    private final S3Client s3Client;
+
+    private final S3MetadataCache metadataCache;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${aws.s3.bucket.name}")
+    private String bucketName;
+
+    @Value("${aws.s3.disk-cache.enabled:false}")
+    private boolean habilitada;
+
+    @Value("${aws.s3.disk-cache.directorio:${java.io.tmpdir}/s3-cache}")
+    private String directorio;
+
+    @Value("${aws.s3.disk-cache.max-bytes:1GB}")
+    private DataSize maxBytes = DataSize.ofGigabytes(1);
+
+    // Objetos mayores se sirven siempre directamente desde S3
+    @Value("${aws.s3.disk-cache.max-objeto:50MB}")
+    private DataSize maxObjeto = DataSize.ofMegabytes(50);
+
+    private record Entrada(Path archivo, long size, String eTag, String contentType, Instant lastModified) {
+    }
+
+    private Path raiz;
+
+    // Índice en memoria de las copias en disco; al desalojar una entrada se borra su archivo
+    private Cache<String, Entrada> indice;
+
+    // Claves cuya copia se está escribiendo; los fallos simultáneos van directos a S3
+    private final Set<String> llenando = ConcurrentHashMap.newKeySet();
+
+    private Counter aciertos;
+
+    private Counter fallos;
+
+    private Counter bytesAhorrados;
+
+    @PostConstruct
+    void inicializar() throws IOException {
+        if (!habilitada) {
+            return;
+        }
+
+        raiz = Paths.get(directorio);
+        Files.createDirectories(raiz);
+        limpiarDirectorio();
+
+        // Desalojo por bytes totales (W-TinyLFU de Caffeine, que se comporta como un LRU con admisión)
+        indice = Caffeine.newBuilder()
+                .maximumWeight(maxBytes.toBytes())
+                .weigher((String key, Entrada entrada) -> (int) Math.min(Integer.MAX_VALUE, entrada.size()))
+                .removalListener((String key, Entrada entrada, RemovalCause causa) -> borrar(entrada))
+                .build();
+
+        aciertos = Counter.builder("s3.disk-cache.hits")
+                .description("Descargas servidas desde la copia en disco")
+                .register(meterRegistry);
+        fallos = Counter.builder("s3.disk-cache.misses")
+                .description("Descargas que tuvieron que ir a S3")
+                .register(meterRegistry);
+        bytesAhorrados = Counter.builder("s3.disk-cache.bytes-saved")
+                .description("Bytes servidos desde disco en lugar de S3")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("s3.disk-cache.hit-ratio", this, S3DiskCache::tasaAciertos)
+                .register(meterRegistry);
+        Gauge.builder("s3.disk-cache.bytes", this, cache -> cache.indice.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L))
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean isHabilitada() {
+        return habilitada;
+    }
+
+    /**
+     * Abre la descarga desde disco o, si no está o cambió, desde S3 copiándola
+     * a disco mientras se lee. Devuelve null si la descarga debe ir a S3 sin
+     * pasar por la caché (demasiado grande o ya se está copiando)
+     */
+    public S3FileDownload abrir(String key, String fileName) {
+        Entrada entrada = buscarValida(key);
+        if (entrada != null) {
+            S3FileDownload download = desdeDisco(key, fileName, entrada);
+            if (download != null) {
+                aciertos.increment();
+                bytesAhorrados.increment(entrada.size());
+                return download;
+            }
+        }
+
+        fallos.increment();
+        if (!llenando.add(key)) {
+            return null;
+        }
+        try {
+            return descargar(key, fileName);
+        } catch (RuntimeException e) {
+            llenando.remove(key);
+            throw e;
+        }
+    }
+
+    /**
+     * Descarta la copia en disco tras una escritura o borrado propio
+     */
+    public void invalidar(String key) {
+        if (habilitada) {
+            indice.invalidate(key);
+        }
+    }
+
+    private Entrada buscarValida(String key) {
+        Entrada entrada = indice.getIfPresent(key);
+        if (entrada == null) {
+            return null;
+        }
+
+        // El ETag vigente sale de la caché de metadatos; si no lo conoce, un HEAD
+        S3MetadataCache.Metadatos metadatos = metadataCache.obtener(key);
+        if (metadatos == null) {
+            metadatos = consultarMetadatos(key);
+        }
+
+        if (!metadatos.existe() || !Objects.equals(metadatos.eTag(), entrada.eTag())) {
+            indice.invalidate(key);
+            return null;
+        }
+        return entrada;
+    }
+
+    private S3MetadataCache.Metadatos consultarMetadatos(String key) {
+        try {
+            return metadataCache.guardar(key, s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build()));
+        } catch (S3Exception e) {
+            if (e instanceof NoSuchKeyException || e.statusCode() == 404) {
+                return metadataCache.marcarAusente(key);
+            }
+            throw new RuntimeException("Error de S3: " + e.getMessage(), e);
+        }
+    }
+
+    private S3FileDownload descargar(String key, String fileName) {
+        S3MetadataCache.Metadatos conocidos = metadataCache.obtener(key);
+        if (conocidos != null && conocidos.existe() && conocidos.size() > maxObjeto.toBytes()) {
+            llenando.remove(key);
+            return null;
+        }
+
+        ResponseInputStream<GetObjectResponse> s3Object;
+        try {
+            s3Object = s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build());
+        } catch (NoSuchKeyException e) {
+            metadataCache.marcarAusente(key);
+            throw new RuntimeException("Archivo no encontrado: " + key);
+        } catch (S3Exception e) {
+            throw new RuntimeException("Error de S3: " + e.getMessage(), e);
+        }
+
+        GetObjectResponse response = s3Object.response();
+        metadataCache.guardar(key, response);
+
+        // Demasiado grande para cachear: se sirve este mismo GET en lugar de pedir otro
+        InputStream contenido = s3Object;
+        if (response.contentLength() > maxObjeto.toBytes()) {
+            llenando.remove(key);
+        } else {
+            try {
+                contenido = new CopiaEnDisco(key, s3Object);
+            } catch (IOException e) {
+                log.warn("No se pudo cachear {} en disco: {}", key, e.getMessage());
+                llenando.remove(key);
+            }
+        }
+
+        return new S3FileDownload(
+                fileName,
+                key,
+                response.contentLength(),
+                response.contentType(),
+                response.eTag(),
+                response.lastModified(),
+                null,
+                contenido);
+    }
+
+    private S3FileDownload desdeDisco(String key, String fileName, Entrada entrada) {
+        try {
+            // Abierto el archivo, un desalojo posterior solo borra el nombre y la lectura continúa
+            InputStream contenido = Files.newInputStream(entrada.archivo());
+            return new S3FileDownload(
+                    fileName,
+                    key,
+                    entrada.size(),
+                    entrada.contentType(),
+                    entrada.eTag(),
+                    entrada.lastModified(),
+                    null,
+                    contenido);
+        } catch (NoSuchFileException e) {
+            indice.invalidate(key);
+            return null;
+        } catch (IOException e) {
+            log.warn("No se pudo leer la copia en disco de {}: {}", key, e.getMessage());
+            indice.invalidate(key);
+            return null;
+        }
+    }
+
+    private double tasaAciertos() {
+        double total = aciertos.count() + fallos.count();
+        return total == 0 ? 0 : aciertos.count() / total;
+    }
+
+    private void borrar(Entrada entrada) {
+        if (entrada != null) {
+            borrarSilencioso(entrada.archivo());
+        }
+    }
+
+    private void borrarSilencioso(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            log.warn("No se pudo borrar {} de la caché en disco: {}", archivo, e.getMessage());
+        }
+    }
+
+    /**
+     * Cuerpo del GET que copia a un temporal lo que el cliente va leyendo. Al
+     * leer el objeto completo la copia se publica con un rename y se añade al
+     * índice; si la lectura se corta o el disco falla, se descarta sin afectar
+     * al cliente. Un desalojo inmediato solo afecta a descargas posteriores
+     */
+    private final class CopiaEnDisco extends FilterInputStream implements Abortable {
+
+        private final String key;
+
+        private final ResponseInputStream<GetObjectResponse> s3Object;
+
+        private final Path archivo;
+
+        private final Path temporal;
+
+        private final OutputStream copia;
+
+        private long copiados;
+
+        private boolean terminada;
+
+        CopiaEnDisco(String key, ResponseInputStream<GetObjectResponse> s3Object) throws IOException {
+            super(s3Object);
+            this.key = key;
+            this.s3Object = s3Object;
+            this.archivo = raiz.resolve(UUID.randomUUID() + ".bin");
+            this.temporal = raiz.resolve(archivo.getFileName() + ".tmp");
+            this.copia = Files.newOutputStream(temporal, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int leido = super.read();
+            if (leido < 0) {
+                publicar();
+            } else {
+                copiar(new byte[] { (byte) leido }, 0, 1);
+            }
+            return leido;
+        }
+
+        @Override
+        public int read(byte[] buffer, int desde, int longitud) throws IOException {
+            int leidos = super.read(buffer, desde, longitud);
+            if (leidos < 0) {
+                publicar();
+            } else if (leidos > 0) {
+                copiar(buffer, desde, leidos);
+            }
+            return leidos;
+        }
+
+        // Lo saltado no se copia, así que la copia ya no puede completarse
+        @Override
+        public long skip(long n) throws IOException {
+            descartar();
+            return super.skip(n);
+        }
+
+        @Override
+        public void abort() {
+            descartar();
+            s3Object.abort();
+        }
+
+        // Cerrar sin haber leído el objeto entero aborta el GET en lugar de drenarlo
+        @Override
+        public void close() throws IOException {
+            if (!terminada) {
+                abort();
+            }
+            super.close();
+        }
+
+        private void copiar(byte[] buffer, int desde, int longitud) {
+            if (terminada) {
+                return;
+            }
+            try {
+                copia.write(buffer, desde, longitud);
+                copiados += longitud;
+                // Quien copia exactamente Content-Length bytes puede no llegar a leer el -1
+                if (copiados >= s3Object.response().contentLength()) {
+                    publicar();
+                }
+            } catch (IOException e) {
+                log.warn("No se pudo cachear {} en disco: {}", key, e.getMessage());
+                descartar();
+            }
+        }
+
+        private void publicar() {
+            if (terminada) {
+                return;
+            }
+            terminada = true;
+            GetObjectResponse response = s3Object.response();
+            try {
+                copia.close();
+                if (copiados != response.contentLength()) {
+                    borrarSilencioso(temporal);
+                    return;
+                }
+                Files.move(temporal, archivo, StandardCopyOption.ATOMIC_MOVE);
+                indice.put(key, new Entrada(archivo, response.contentLength(), response.eTag(),
+                        response.contentType(), response.lastModified()));
+            } catch (IOException e) {
+                log.warn("No se pudo cachear {} en disco: {}", key, e.getMessage());
+                borrarSilencioso(temporal);
+            } finally {
+                llenando.remove(key);
+            }
+        }
+
+        private void descartar() {
+            if (terminada) {
+                return;
+            }
+            terminada = true;
+            try {
+                copia.close();
+            } catch (IOException e) {
+                // Se borra igualmente
+            }
+            borrarSilencioso(temporal);
+            llenando.remove(key);
+        }
+    }
+
+    // El índice vive en memoria, así que las copias de una ejecución anterior no se pueden validar
+    private void limpiarDirectorio() throws IOException {
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(raiz, "*.{bin,tmp}")) {
+            for (Path archivo : archivos) {
+                borrarSilencioso(archivo);
+            }
+        }
+    }
+}
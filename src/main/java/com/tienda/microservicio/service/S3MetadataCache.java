@@ -0,0 +1,129 @@
+package com.tienda.microservicio.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Metadatos de objetos del bucket por clave, para responder existencia e
+ * información sin un HEAD por petición. Se alimenta de las respuestas de HEAD,
+ * GET y LIST y se invalida con nuestras propias escrituras y borrados; los
+ * cambios hechos por terceros se ven como mucho tras el TTL
+ */
+@Component
+@RequiredArgsConstructor
+public class S3MetadataCache {
+
+    /**
+     * Metadatos de un objeto. Los que vienen de un listado no traen content
+     * type (completos = false); AUSENTE marca una clave que no existe
+     */
+    public record Metadatos(long size, Instant lastModified, String contentType, String eTag, boolean completos) {
+
+        public boolean existe() {
+            return this != AUSENTE;
+        }
+    }
+
+    private static final Metadatos AUSENTE = new Metadatos(-1, null, null, null, true);
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${aws.s3.metadata-cache.max-size:10000}")
+    private long maxSize = 10000;
+
+    @Value("${aws.s3.metadata-cache.ttl:5m}")
+    private Duration ttl = Duration.ofMinutes(5);
+
+    // Las claves inexistentes se recuerdan menos tiempo para ver pronto las subidas de terceros
+    @Value("${aws.s3.metadata-cache.ttl-negativo:30s}")
+    private Duration ttlNegativo = Duration.ofSeconds(30);
+
+    private Cache<String, Metadatos> cache;
+
+    @PostConstruct
+    void inicializar() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Metadatos>() {
+                    @Override
+                    public long expireAfterCreate(String key, Metadatos metadatos, long currentTime) {
+                        return duracion(metadatos);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Metadatos metadatos, long currentTime,
+                            long currentDuration) {
+                        return duracion(metadatos);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Metadatos metadatos, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "s3.metadata");
+    }
+
+    /**
+     * Metadatos conocidos de la clave, o null si hay que preguntar a S3
+     */
+    public Metadatos obtener(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    public Metadatos guardar(String key, HeadObjectResponse response) {
+        Metadatos metadatos = new Metadatos(response.contentLength(), response.lastModified(),
+                response.contentType(), response.eTag(), true);
+        cache.put(key, metadatos);
+        return metadatos;
+    }
+
+    public void guardar(String key, GetObjectResponse response) {
+        // Con Range el content length es el de la porción, no el del objeto
+        if (response.contentRange() != null) {
+            return;
+        }
+        cache.put(key, new Metadatos(response.contentLength(), response.lastModified(), response.contentType(),
+                response.eTag(), true));
+    }
+
+    public void guardar(S3Object s3Object) {
+        Metadatos listado = new Metadatos(s3Object.size(), s3Object.lastModified(), null, s3Object.eTag(), false);
+        // Si ya hay metadatos completos de la misma versión se conservan (incluyen content type)
+        cache.asMap().merge(s3Object.key(), listado, (actual, nuevo) -> actual.completos() && actual.existe()
+                && Objects.equals(actual.eTag(), nuevo.eTag()) ? actual : nuevo);
+    }
+
+    public Metadatos marcarAusente(String key) {
+        cache.put(key, AUSENTE);
+        return AUSENTE;
+    }
+
+    public void invalidar(String key) {
+        cache.invalidate(key);
+    }
+
+    private long duracion(Metadatos metadatos) {
+        return (metadatos.existe() ? ttl : ttlNegativo).toNanos();
+    }
+}
@@ -0,0 +1,234 @@
+package com.tienda.microservicio.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+/**
+ * Subidas multiparte a S3: el archivo se lee por partes y cada parte se sube
+ * en paralelo con el cliente asíncrono, sin ocupar un hilo por parte. La
+ * memoria usada queda acotada por el número de buffers de parte, que se
+ * reutilizan entre subidas, y no por el tamaño del archivo. El hilo que llama
+ * a subir sí queda bloqueado (lee el archivo y espera a que termine), igual
+ * que con el cliente síncrono. Los reintentos de cada parte los hace solo el
+ * SDK (aws.s3.async.max-intentos)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class S3MultipartUploader {
+
+    // Mínimo que S3 admite para todas las partes salvo la última
+    private static final long TAMANO_MINIMO_PARTE = DataSize.ofMegabytes(5).toBytes();
+
+    private final S3AsyncClient s3AsyncClient;
+
+    @Value("${aws.s3.bucket.name}")
+    private String bucketName;
+
+    // Archivos a partir de este tamaño se suben en partes
+    @Value("${aws.s3.multipart.umbral:16MB}")
+    private DataSize umbral = DataSize.ofMegabytes(16);
+
+    @Value("${aws.s3.multipart.tamano-parte:8MB}")
+    private DataSize tamanoParte = DataSize.ofMegabytes(8);
+
+    // Buffers de parte en memoria a la vez (entre todas las subidas): limita también
+    // las partes subiéndose a la vez, ya que cada parte en vuelo retiene su buffer
+    @Value("${aws.s3.multipart.max-buffers:8}")
+    private int maxBuffers = 8;
+
+    private int bytesPorParte;
+
+    private Semaphore buffersDisponibles;
+
+    private final Queue<byte[]> buffersLibres = new ConcurrentLinkedQueue<>();
+
+    @PostConstruct
+    void inicializar() {
+        bytesPorParte = (int) Math.min(Integer.MAX_VALUE - 8,
+                Math.max(TAMANO_MINIMO_PARTE, tamanoParte.toBytes()));
+        buffersDisponibles = new Semaphore(Math.max(1, maxBuffers));
+    }
+
+    public boolean usarMultiparte(long tamano) {
+        return tamano >= umbral.toBytes();
+    }
+
+    /**
+     * Sube el contenido como objeto multiparte. Si alguna parte falla tras los
+     * reintentos del SDK se aborta la subida para no dejar partes huérfanas en el bucket
+     */
+    public void subir(String key, String contentType, InputStream in) throws IOException {
+        String uploadId;
+        try {
+            uploadId = s3AsyncClient.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .contentType(contentType)
+                    .build())
+                    .join()
+                    .uploadId();
+        } catch (CompletionException e) {
+            relanzar(e);
+            return;
+        }
+
+        List<CompletableFuture<CompletedPart>> partes = new ArrayList<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+
+        try {
+            int numeroParte = 1;
+            while (error.get() == null) {
+                byte[] buffer = tomarBuffer();
+                int leidos;
+                try {
+                    leidos = in.readNBytes(buffer, 0, buffer.length);
+                } catch (IOException e) {
+                    devolverBuffer(buffer);
+                    throw e;
+                }
+
+                if (leidos == 0 && numeroParte > 1) {
+                    devolverBuffer(buffer);
+                    break;
+                }
+
+                int parte = numeroParte++;
+                partes.add(subirParte(key, uploadId, parte, buffer, leidos, error)
+                        .whenComplete((resultado, e) -> {
+                            devolverBuffer(buffer);
+                            if (e != null) {
+                                error.compareAndSet(null, e);
+                            }
+                        }));
+
+                if (leidos < buffer.length) {
+                    break;
+                }
+            }
+
+            List<CompletedPart> completadas = new ArrayList<>(partes.size());
+            for (CompletableFuture<CompletedPart> parte : partes) {
+                completadas.add(parte.join());
+            }
+            if (error.get() != null) {
+                throw error.get();
+            }
+            completadas.sort(Comparator.comparing(CompletedPart::partNumber));
+
+            s3AsyncClient.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completadas).build())
+                    .build())
+                    .join();
+
+            log.info("Subida multiparte completada: {} ({} partes)", key, completadas.size());
+
+        } catch (Throwable e) {
+            error.compareAndSet(null, e);
+            // Las partes en curso terminan antes de abortar; las pendientes ya no se envían
+            partes.forEach(parte -> parte.exceptionally(ex -> null).join());
+            abortar(key, uploadId);
+            relanzar(error.get());
+        }
+    }
+
+    private CompletableFuture<CompletedPart> subirParte(String key, String uploadId, int numeroParte,
+            byte[] buffer, int longitud, AtomicReference<Throwable> error) {
+        if (error.get() != null) {
+            return CompletableFuture.failedFuture(new CancellationException("Subida multiparte cancelada: " + key));
+        }
+
+        UploadPartRequest request = UploadPartRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(numeroParte)
+                .contentLength((long) longitud)
+                .build();
+
+        // El cuerpo envuelve el buffer sin copiarlo; el SDK lo vuelve a leer en cada reintento
+        return s3AsyncClient.uploadPart(request, AsyncRequestBody.fromByteBufferUnsafe(
+                ByteBuffer.wrap(buffer, 0, longitud)))
+                .thenApply(response -> CompletedPart.builder()
+                        .partNumber(numeroParte)
+                        .eTag(response.eTag())
+                        .build());
+    }
+
+    private void abortar(String key, String uploadId) {
+        try {
+            s3AsyncClient.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build())
+                    .join();
+            log.warn("Subida multiparte abortada: {}", key);
+        } catch (CompletionException | SdkException e) {
+            log.error("No se pudo abortar la subida multiparte {} de {}: {}", uploadId, key, e.getMessage());
+        }
+    }
+
+    private byte[] tomarBuffer() throws IOException {
+        try {
+            buffersDisponibles.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Subida interrumpida", e);
+        }
+        byte[] buffer = buffersLibres.poll();
+        return buffer != null ? buffer : new byte[bytesPorParte];
+    }
+
+    private void devolverBuffer(byte[] buffer) {
+        buffersLibres.offer(buffer);
+        buffersDisponibles.release();
+    }
+
+    // Siempre lanza: S3Exception y Error tal cual, IOException sin envolver y el resto como IOException
+    private void relanzar(Throwable e) throws IOException {
+        Throwable causa = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (causa instanceof S3Exception s3e) {
+            throw s3e;
+        }
+        if (causa instanceof Error error) {
+            throw error;
+        }
+        if (causa instanceof IOException io) {
+            throw io;
+        }
+        throw new IOException("Error en subida multiparte: " + causa.getMessage(), causa);
+    }
+}
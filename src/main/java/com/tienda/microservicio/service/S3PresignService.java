@@ -0,0 +1,187 @@
+package com.tienda.microservicio.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import com.tienda.microservicio.dto.PresignedUpload;
+import com.tienda.microservicio.dto.S3FileInfo;
+import com.tienda.microservicio.dto.UploadResponse;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+/**
+ * Modo de transferencia directa: en lugar de pasar los bytes por la JVM se
+ * entregan URLs prefirmadas de corta duración. Cada subida firma en los
+ * metadatos del objeto su identificador y su tamaño, así que cualquier
+ * instancia puede confirmarla con un HEAD sin guardar estado propio
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class S3PresignService {
+
+    // Metadatos de usuario firmados en el PUT (S3 los guarda como x-amz-meta-*)
+    static final String META_SUBIDA = "subida-id";
+    static final String META_TAMANO = "subida-tamano";
+    static final String META_TIPO = "subida-tipo";
+
+    /**
+     * No hay una subida firmada con ese identificador para la clave (no se
+     * hizo el PUT, caducó la URL o el objeto lo escribió otra subida)
+     */
+    public static class SubidaNoEncontradaException extends RuntimeException {
+        public SubidaNoEncontradaException(String fileName) {
+            super("Subida no encontrada o caducada: " + fileName);
+        }
+    }
+
+    private final S3Presigner s3Presigner;
+
+    private final AwsS3Service awsS3Service;
+
+    private final S3DiskCache diskCache;
+
+    @Value("${aws.s3.bucket.name}")
+    private String bucketName;
+
+    @Value("${aws.s3.presign.download.enabled:false}")
+    private boolean descargaHabilitada;
+
+    @Value("${aws.s3.presign.upload.enabled:false}")
+    private boolean subidaHabilitada;
+
+    @Value("${aws.s3.presign.ttl:5m}")
+    private Duration ttl = Duration.ofMinutes(5);
+
+    // Mismo límite que las subidas a través del servicio
+    @Value("${spring.servlet.multipart.max-file-size:50MB}")
+    private DataSize tamanoMaximo = DataSize.ofMegabytes(50);
+
+    public boolean isDescargaHabilitada() {
+        return descargaHabilitada;
+    }
+
+    public boolean isSubidaHabilitada() {
+        return subidaHabilitada;
+    }
+
+    /**
+     * URL prefirmada de descarga; fuerza el mismo Content-Disposition que la descarga proxy
+     */
+    public String presignDownload(String fileName) {
+        String nombre = fileName.contains("/") ? fileName.substring(fileName.lastIndexOf("/") + 1) : fileName;
+
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileName)
+                .responseContentDisposition(ContentDisposition.attachment().filename(nombre).build().toString())
+                .build();
+
+        return s3Presigner.presignGetObject(builder -> builder
+                .signatureDuration(ttl)
+                .getObjectRequest(getObjectRequest))
+                .url()
+                .toString();
+    }
+
+    /**
+     * Firma un PUT para un archivo nuevo. El tamaño queda firmado, así que S3
+     * rechaza cuerpos de otra longitud
+     */
+    public PresignedUpload presignUpload(String originalFileName, String contentType, long size) {
+        validarTamano(size);
+        return firmarSubida(awsS3Service.generateUniqueFileName(originalFileName), contentType, size, false);
+    }
+
+    /**
+     * Firma un PUT que sobrescribe un archivo existente
+     */
+    public PresignedUpload presignUpdate(String fileName, String contentType, long size) {
+        validarTamano(size);
+        return firmarSubida(fileName, contentType, size, true);
+    }
+
+    /**
+     * Comprueba con un HEAD que el objeto lo escribió la subida firmada
+     * indicada y que tiene el tamaño firmado
+     */
+    public UploadResponse confirmUpload(String fileName, String uploadId) {
+        // La escritura la hizo el cliente directamente: lo cacheado ya no es fiable
+        diskCache.invalidar(fileName);
+        HeadObjectResponse head = awsS3Service.consultarObjeto(fileName);
+        if (head == null || !uploadId.equals(head.metadata().get(META_SUBIDA))) {
+            throw new SubidaNoEncontradaException(fileName);
+        }
+
+        String tamanoFirmado = head.metadata().get(META_TAMANO);
+        if (tamanoFirmado == null || head.contentLength() != Long.parseLong(tamanoFirmado)) {
+            throw new IllegalArgumentException("El tamaño subido no coincide con el firmado: " + fileName);
+        }
+
+        S3FileInfo fileInfo = awsS3Service.getFileInfo(fileName);
+        boolean actualizacion = "actualizacion".equals(head.metadata().get(META_TIPO));
+        log.info("Subida directa confirmada: {} ({} bytes)", fileName, fileInfo.getSize());
+
+        return new UploadResponse(
+                actualizacion ? "Archivo actualizado exitosamente" : "Archivo subido exitosamente",
+                fileName,
+                fileInfo.getUrl(),
+                fileInfo.getSize(),
+                true);
+    }
+
+    private PresignedUpload firmarSubida(String fileName, String contentType, long size, boolean actualizacion) {
+        String uploadId = UUID.randomUUID().toString();
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileName)
+                .contentType(contentType)
+                .contentLength(size)
+                .metadata(Map.of(
+                        META_SUBIDA, uploadId,
+                        META_TAMANO, Long.toString(size),
+                        META_TIPO, actualizacion ? "actualizacion" : "nueva"))
+                .build();
+
+        PresignedPutObjectRequest presigned = s3Presigner.presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(ttl)
+                .putObjectRequest(putObjectRequest)
+                .build());
+
+        Map<String, String> headers = presigned.signedHeaders().entrySet().stream()
+                .filter(header -> !header.getKey().equalsIgnoreCase("host"))
+                .collect(Collectors.toMap(Map.Entry::getKey, header -> String.join(",", header.getValue())));
+
+        return new PresignedUpload(
+                fileName,
+                uploadId,
+                presigned.url().toString(),
+                presigned.httpRequest().method().name(),
+                headers,
+                presigned.expiration());
+    }
+
+    private void validarTamano(long size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("No se ha seleccionado ningún archivo");
+        }
+        if (size > tamanoMaximo.toBytes()) {
+            throw new IllegalArgumentException("El archivo es demasiado grande. Máximo "
+                    + tamanoMaximo.toMegabytes() + "MB permitido");
+        }
+    }
+}
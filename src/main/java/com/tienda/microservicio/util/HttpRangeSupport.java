@@ -0,0 +1,150 @@
+package com.tienda.microservicio.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.http.HttpRange;
+
+/**
+ * Utilidades para responder peticiones HTTP con Range / If-Range (RFC 9110)
+ * con 206 Partial Content, de un rango o multipart/byteranges
+ */
+public final class HttpRangeSupport {
+
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    // Regiones distintas (tras agrupar) que se sirven en multipart; con más se responde el recurso completo
+    public static final int MAX_REGIONES = 8;
+
+    private HttpRangeSupport() {
+    }
+
+    // Escribe en el stream la porción [inicio, fin] (ambos inclusive) del recurso
+    @FunctionalInterface
+    public interface RegionWriter {
+        void write(long inicio, long fin, OutputStream out) throws IOException;
+    }
+
+    // Porción de un recurso, con ambos extremos inclusive
+    public record Region(long inicio, long fin) {
+        public long longitud() {
+            return fin - inicio + 1;
+        }
+    }
+
+    /**
+     * Rangos solicitados. Devuelve una lista vacía si no hay Range, si es
+     * inválido (se ignora, como indica la RFC) o si If-Range no coincide con
+     * la versión actual del recurso, casos en que se responde completo
+     */
+    public static List<HttpRange> rangosSolicitados(String range, String ifRange, String eTag, Instant lastModified) {
+        if (range == null || range.isBlank()) {
+            return Collections.emptyList();
+        }
+        if (ifRange != null && !ifRangeCoincide(ifRange, eTag, lastModified)) {
+            return Collections.emptyList();
+        }
+        try {
+            return HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * If-Range admite un ETag fuerte o una fecha HTTP que debe coincidir
+     * exactamente con Last-Modified
+     */
+    public static boolean ifRangeCoincide(String ifRange, String eTag, Instant lastModified) {
+        String valor = ifRange.trim();
+        if (valor.startsWith("\"") || valor.startsWith("W/")) {
+            return !valor.startsWith("W/") && eTag != null && !eTag.startsWith("W/") && valor.equals(eTag);
+        }
+        if (lastModified == null) {
+            return false;
+        }
+        try {
+            Instant fecha = ZonedDateTime.parse(valor, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return fecha.equals(lastModified.truncatedTo(ChronoUnit.SECONDS));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Convierte los rangos en regiones concretas para un recurso de la longitud
+     * dada, ordenadas y con las solapadas o contiguas agrupadas. Devuelve una
+     * lista vacía si quedan más de MAX_REGIONES (se responde completo, 200) y
+     * lanza IllegalArgumentException si ninguna es satisfacible (416)
+     */
+    public static List<Region> regiones(List<HttpRange> rangos, long longitud) {
+        List<Region> regiones = new ArrayList<>(rangos.size());
+        for (HttpRange rango : rangos) {
+            try {
+                long inicio = rango.getRangeStart(longitud);
+                long fin = rango.getRangeEnd(longitud);
+                if (inicio < longitud && inicio <= fin) {
+                    regiones.add(new Region(inicio, fin));
+                }
+            } catch (IllegalArgumentException e) {
+                // Rango no satisfacible: se descarta
+            }
+        }
+        if (regiones.isEmpty()) {
+            throw new IllegalArgumentException("Rango no satisfacible");
+        }
+
+        regiones.sort(Comparator.comparingLong(Region::inicio));
+        List<Region> agrupadas = new ArrayList<>(regiones.size());
+        Region actual = regiones.get(0);
+        for (Region region : regiones.subList(1, regiones.size())) {
+            if (region.inicio() <= actual.fin() + 1) {
+                actual = new Region(actual.inicio(), Math.max(actual.fin(), region.fin()));
+            } else {
+                agrupadas.add(actual);
+                actual = region;
+            }
+        }
+        agrupadas.add(actual);
+
+        return agrupadas.size() > MAX_REGIONES ? Collections.emptyList() : agrupadas;
+    }
+
+    public static String contentRange(Region region, long longitud) {
+        return "bytes " + region.inicio() + "-" + region.fin() + "/" + longitud;
+    }
+
+    public static String contentRangeNoSatisfacible(long longitud) {
+        return "bytes */" + longitud;
+    }
+
+    /**
+     * Escribe un cuerpo multipart/byteranges con una parte por región
+     */
+    public static void escribirMultipart(OutputStream out, String boundary, String contentType, long longitud,
+            List<Region> regiones, RegionWriter writer) throws IOException {
+        for (Region region : regiones) {
+            out.write(CRLF);
+            out.write(("--" + boundary).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            out.write(("Content-Type: " + contentType).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            out.write(("Content-Range: " + contentRange(region, longitud)).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            out.write(CRLF);
+            writer.write(region.inicio(), region.fin(), out);
+        }
+        out.write(CRLF);
+        out.write(("--" + boundary + "--").getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+}
@@ -0,0 +1,75 @@
+package com.tienda.microservicio.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Recursos abiertos en el hilo de la petición que consume después el cuerpo
+ * en streaming (p. ej. el GET de S3). Si el cuerpo nunca llega a ejecutarse
+ * (timeout del async, cliente que corta antes, executor lleno), se liberan
+ * al completarse la petición en lugar de quedar retenidos
+ */
+@Slf4j
+public class RecursosRespuesta implements CallableProcessingInterceptor {
+
+    private static final String ATRIBUTO = RecursosRespuesta.class.getName();
+
+    /**
+     * Envuelve el cuerpo para que, si no llega a ejecutarse, se llame a liberar.
+     * Debe llamarse desde el hilo de la petición
+     */
+    public static StreamingResponseBody liberarSiNoSeEjecuta(StreamingResponseBody cuerpo, Runnable liberar) {
+        Pendiente pendiente = new Pendiente(liberar);
+
+        RequestAttributes atributos = RequestContextHolder.currentRequestAttributes();
+        @SuppressWarnings("unchecked")
+        List<Pendiente> pendientes = (List<Pendiente>) atributos.getAttribute(ATRIBUTO, RequestAttributes.SCOPE_REQUEST);
+        if (pendientes == null) {
+            pendientes = new ArrayList<>();
+            atributos.setAttribute(ATRIBUTO, pendientes, RequestAttributes.SCOPE_REQUEST);
+        }
+        pendientes.add(pendiente);
+
+        return out -> {
+            pendiente.iniciado.set(true);
+            cuerpo.writeTo(out);
+        };
+    }
+
+    @Override
+    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+        @SuppressWarnings("unchecked")
+        List<Pendiente> pendientes = (List<Pendiente>) request.getAttribute(ATRIBUTO, RequestAttributes.SCOPE_REQUEST);
+        if (pendientes == null) {
+            return;
+        }
+        for (Pendiente pendiente : pendientes) {
+            if (pendiente.iniciado.compareAndSet(false, true)) {
+                try {
+                    pendiente.liberar.run();
+                } catch (RuntimeException e) {
+                    log.warn("No se pudo liberar un recurso de la respuesta: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static final class Pendiente {
+        private final AtomicBoolean iniciado = new AtomicBoolean();
+        private final Runnable liberar;
+
+        private Pendiente(Runnable liberar) {
+            this.liberar = liberar;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+-- Migración de las columnas IDENTITY a secuencias con asignación pooled.
+--
+-- Las entidades Producto, Boleta y DetalleBoleta usan ahora
+-- GenerationType.SEQUENCE con allocationSize = 50, lo que permite a Hibernate
+-- agrupar los INSERT en lotes JDBC. Las tablas creadas con la versión anterior
+-- tienen la columna id definida como "GENERATED AS IDENTITY", que rechaza
+-- valores explícitos.
+--
+-- Ejecutar UNA sola vez sobre el esquema existente, con la aplicación detenida
+-- y ANTES de desplegar la nueva versión (si la aplicación arranca primero,
+-- ddl-auto=update crearía las secuencias empezando en 1).
+-- En una base de datos nueva no hace falta: Hibernate crea las secuencias.
+
+DECLARE
+    PROCEDURE migrar(p_tabla VARCHAR2, p_secuencia VARCHAR2) IS
+        v_max NUMBER;
+    BEGIN
+        EXECUTE IMMEDIATE 'ALTER TABLE ' || p_tabla || ' MODIFY (id DROP IDENTITY)';
+        EXECUTE IMMEDIATE 'SELECT NVL(MAX(id), 0) FROM ' || p_tabla INTO v_max;
+        -- Con el optimizador pooled el valor de la secuencia es el extremo
+        -- superior del bloque, por eso se deja un bloque completo de margen
+        EXECUTE IMMEDIATE 'CREATE SEQUENCE ' || p_secuencia
+                || ' START WITH ' || (v_max + 51) || ' INCREMENT BY 50';
+    END;
+BEGIN
+    migrar('producto', 'producto_seq');
+    migrar('boleta', 'boleta_seq');
+    migrar('detalleboleta', 'detalleboleta_seq');
+END;
+/
@@ -0,0 +1,110 @@
+package com.tienda.microservicio.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.tienda.microservicio.dto.EfsFileInfo;
+import com.tienda.microservicio.health.EfsHealthIndicator;
+import com.tienda.microservicio.service.AwsEfsService;
+import com.tienda.microservicio.service.EfsLayoutMigrator;
+
+@ExtendWith(MockitoExtension.class)
+class AwsEfsControllerTest {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Mock
+    private AwsEfsService awsEfsService;
+
+    @Mock
+    private EfsHealthIndicator efsHealthIndicator;
+
+    @Mock
+    private EfsLayoutMigrator layoutMigrator;
+
+    @InjectMocks
+    private AwsEfsController controller;
+
+    private final EfsFileInfo fileInfo = new EfsFileInfo("a.pdf", "a.pdf", 100, Instant.EPOCH,
+            "application/pdf", "/mnt/efs/ab/cd/a.pdf");
+
+    @BeforeEach
+    void setUp() {
+        when(awsEfsService.getFileInfoActual("a.pdf")).thenReturn(fileInfo);
+        when(awsEfsService.etag(fileInfo)).thenReturn("\"v1\"");
+    }
+
+    @Test
+    void conSendfileElRangoSeDelegaATomcatConFinExclusivo() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(SENDFILE_SUPPORT, Boolean.TRUE);
+
+        ResponseEntity<StreamingResponseBody> response = controller.downloadFile("a.pdf", "bytes=10-19", null,
+                request);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals("bytes 10-19/100", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(10, response.getHeaders().getContentLength());
+        assertEquals(Paths.get("/mnt/efs/ab/cd/a.pdf").toAbsolutePath().toString(),
+                request.getAttribute(SENDFILE_FILENAME));
+        assertEquals(10L, request.getAttribute(SENDFILE_START));
+        assertEquals(20L, request.getAttribute(SENDFILE_END));
+    }
+
+    @Test
+    void conSendfileElArchivoCompletoTerminaEnLaLongitud() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(SENDFILE_SUPPORT, Boolean.TRUE);
+
+        ResponseEntity<StreamingResponseBody> response = controller.downloadFile("a.pdf", null, null, request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals(0L, request.getAttribute(SENDFILE_START));
+        assertEquals(100L, request.getAttribute(SENDFILE_END));
+    }
+
+    @Test
+    void sinSendfileElRangoSeCopiaDesdeElServicio() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        ResponseEntity<StreamingResponseBody> response = controller.downloadFile("a.pdf", "bytes=10-19", null,
+                request);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertNull(request.getAttribute(SENDFILE_FILENAME));
+        assertNotNull(response.getBody());
+        verify(awsEfsService, never()).transferRange(any(), anyLong(), anyLong(), any(OutputStream.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        verify(awsEfsService).transferRange("a.pdf", 10L, 19L, out);
+    }
+}
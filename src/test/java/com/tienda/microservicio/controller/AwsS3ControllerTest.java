@@ -0,0 +1,129 @@
+package com.tienda.microservicio.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.tienda.microservicio.dto.BatchDeleteResponse;
+import com.tienda.microservicio.dto.BatchUploadResponse;
+import com.tienda.microservicio.dto.S3FileDownload;
+import com.tienda.microservicio.dto.UploadResponse;
+import com.tienda.microservicio.health.S3HealthIndicator;
+import com.tienda.microservicio.service.AwsS3Service;
+import com.tienda.microservicio.service.S3BatchService;
+import com.tienda.microservicio.service.S3PresignService;
+
+@ExtendWith(MockitoExtension.class)
+class AwsS3ControllerTest {
+
+    @Mock
+    private AwsS3Service awsS3Service;
+
+    @Mock
+    private S3PresignService presignService;
+
+    @Mock
+    private S3HealthIndicator s3HealthIndicator;
+
+    @Mock
+    private S3BatchService batchService;
+
+    @InjectMocks
+    private AwsS3Controller controller;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(controller, "maxArchivosLote", 20);
+        ReflectionTestUtils.setField(controller, "maxClavesLote", 10000);
+        ReflectionTestUtils.setField(controller, "tamanoMaximo", DataSize.ofBytes(10));
+    }
+
+    @Test
+    void borradoParcialRespondeMultiStatus() {
+        when(batchService.deleteFiles(List.of("a", "b")))
+                .thenReturn(new BatchDeleteResponse(List.of("a"), Map.of("b", "AccessDenied: Access Denied"), false));
+
+        ResponseEntity<BatchDeleteResponse> response = controller.deleteFiles(List.of("a", "b"));
+
+        assertEquals(HttpStatus.MULTI_STATUS, response.getStatusCode());
+        assertEquals(List.of("a"), response.getBody().getDeleted());
+    }
+
+    @Test
+    void borradoCompletoRespondeOk() {
+        when(batchService.deleteFiles(List.of("a")))
+                .thenReturn(new BatchDeleteResponse(List.of("a"), Map.of(), true));
+
+        assertEquals(HttpStatus.OK, controller.deleteFiles(List.of("a")).getStatusCode());
+    }
+
+    @Test
+    void subidaEnLoteParcialRespondeMultiStatus() {
+        List<MultipartFile> files = List.of(archivo(5), archivo(5));
+        UploadResponse correcta = new UploadResponse("ok", "a.pdf", "url", 5, true);
+        UploadResponse fallida = new UploadResponse("Error", null, null, 0, false);
+        when(batchService.uploadFiles(files))
+                .thenReturn(new BatchUploadResponse(List.of(correcta, fallida), 1, 1, false));
+
+        assertEquals(HttpStatus.MULTI_STATUS, controller.uploadFiles(files).getStatusCode());
+    }
+
+    @Test
+    void subidaIndividualUsaElLimiteDelMultipart() {
+        ResponseEntity<UploadResponse> response = controller.uploadFile(archivo(11));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(awsS3Service, never()).uploadFile(any(MultipartFile.class));
+    }
+
+    @Test
+    void rangoDeOtraVersionRespondeCompleto() {
+        when(awsS3Service.openRangeDownload("a.pdf", "bytes=0-4", "\"v0\""))
+                .thenThrow(new AwsS3Service.ArchivoModificadoException("a.pdf"));
+        when(awsS3Service.openDownload("a.pdf")).thenReturn(
+                new S3FileDownload("a.pdf", "a.pdf", 10, "application/pdf", "\"v1\"", Instant.EPOCH, null, null));
+
+        ResponseEntity<StreamingResponseBody> response = controller.downloadFile("a.pdf", "bytes=0-4", "\"v0\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(10, response.getHeaders().getContentLength());
+    }
+
+    @Test
+    void rangoNoSatisfacibleResponde416ConLaLongitud() {
+        when(awsS3Service.openRangeDownload("a.pdf", "bytes=50-", null))
+                .thenThrow(new AwsS3Service.RangoNoSatisfacibleException("a.pdf"));
+        when(awsS3Service.headForDownload("a.pdf")).thenReturn(
+                new S3FileDownload("a.pdf", "a.pdf", 10, "application/pdf", "\"v1\"", Instant.EPOCH, null, null));
+
+        ResponseEntity<StreamingResponseBody> response = controller.downloadFile("a.pdf", "bytes=50-", null);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    private static MultipartFile archivo(int tamano) {
+        return new MockMultipartFile("file", "a.pdf", "application/pdf", new byte[tamano]);
+    }
+}
@@ -0,0 +1,68 @@
+package com.tienda.microservicio.health;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class SondaHealthIndicatorTest {
+
+    private final AtomicBoolean disponible = new AtomicBoolean(true);
+
+    private SondaHealthIndicator indicador;
+
+    @BeforeEach
+    void setUp() {
+        indicador = new SondaHealthIndicator() {
+            @Override
+            protected Health sondear() {
+                if (!disponible.get()) {
+                    throw new IllegalStateException("Sin conexión");
+                }
+                return Health.up().withDetail("service", "prueba").build();
+            }
+        };
+        ReflectionTestUtils.setField(indicador, "intervalo", Duration.ofSeconds(30));
+    }
+
+    @Test
+    void sinComprobacionesElEstadoEsDesconocido() {
+        assertEquals(Status.UNKNOWN, indicador.health().getStatus());
+    }
+
+    @Test
+    void respondeConElUltimoResultado() {
+        indicador.actualizar();
+
+        Health health = indicador.health();
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals("prueba", health.getDetails().get("service"));
+        assertNotNull(health.getDetails().get("latenciaMs"));
+
+        disponible.set(false);
+        indicador.actualizar();
+        assertEquals(Status.DOWN, indicador.health().getStatus());
+    }
+
+    @Test
+    void resultadoSeCaducaTrasTresIntervalosSinSondear() {
+        indicador.actualizar();
+
+        // Última comprobación justo dentro del margen de 3 intervalos
+        ReflectionTestUtils.setField(indicador, "ultimaComprobacion", Instant.now().minusSeconds(80));
+        assertEquals(Status.UP, indicador.health().getStatus());
+
+        ReflectionTestUtils.setField(indicador, "ultimaComprobacion", Instant.now().minusSeconds(100));
+        Health health = indicador.health();
+        assertEquals(Status.DOWN, health.getStatus());
+        assertEquals("Sin comprobaciones recientes", health.getDetails().get("message"));
+    }
+}
@@ -0,0 +1,104 @@
+package com.tienda.microservicio.messaging;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.amqp.rabbit.annotation.EnableRabbit;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.test.TestRabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import com.rabbitmq.client.Channel;
+import com.tienda.microservicio.dto.BoletaCreadaEvent;
+import com.tienda.microservicio.service.BoletaPdfService;
+
+// Usa TestRabbitTemplate de spring-rabbit-test como sustituto del broker
+@SpringJUnitConfig
+@TestPropertySource(properties = "boleta.pdf.cola=boletas.pdf")
+class BoletaPdfListenerTest {
+
+    @Autowired
+    private TestRabbitTemplate template;
+
+    @Autowired
+    private BoletaPdfService boletaPdfService;
+
+    @BeforeEach
+    void setUp() {
+        Mockito.reset(boletaPdfService);
+    }
+
+    @Test
+    void eventoBoletaCreadaPreRenderizaElPdf() {
+        template.convertAndSend("boletas.pdf", new BoletaCreadaEvent(42L));
+
+        verify(boletaPdfService).prerenderizar(42L);
+    }
+
+    @Test
+    void pdfYaGuardadoPorOtroConsumidorNoEsUnFallo() {
+        willThrow(new DataIntegrityViolationException("ORA-00001")).given(boletaPdfService).prerenderizar(7L);
+
+        assertDoesNotThrow(() -> template.convertAndSend("boletas.pdf", new BoletaCreadaEvent(7L)));
+        verify(boletaPdfService).prerenderizar(7L);
+    }
+
+    @Configuration
+    @EnableRabbit
+    static class Config {
+
+        @Bean
+        ConnectionFactory connectionFactory() throws IOException {
+            ConnectionFactory factory = mock(ConnectionFactory.class);
+            Connection connection = mock(Connection.class);
+            Channel channel = mock(Channel.class);
+            willReturn(connection).given(factory).createConnection();
+            willReturn(channel).given(connection).createChannel(anyBoolean());
+            given(channel.isOpen()).willReturn(true);
+            return factory;
+        }
+
+        @Bean
+        TestRabbitTemplate template(ConnectionFactory connectionFactory) {
+            TestRabbitTemplate template = new TestRabbitTemplate(connectionFactory);
+            template.setMessageConverter(new Jackson2JsonMessageConverter());
+            return template;
+        }
+
+        @Bean
+        SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(ConnectionFactory connectionFactory) {
+            SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+            factory.setConnectionFactory(connectionFactory);
+            factory.setMessageConverter(new Jackson2JsonMessageConverter());
+            return factory;
+        }
+
+        @Bean
+        BoletaPdfService boletaPdfService() {
+            return mock(BoletaPdfService.class);
+        }
+
+        @Bean
+        BoletaPdfListener boletaPdfListener(BoletaPdfService boletaPdfService) {
+            return new BoletaPdfListener(boletaPdfService);
+        }
+    }
+}
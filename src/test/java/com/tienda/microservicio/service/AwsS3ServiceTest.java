@@ -0,0 +1,159 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tienda.microservicio.dto.S3FileInfo;
+import com.tienda.microservicio.dto.S3FilePage;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+@ExtendWith(MockitoExtension.class)
+class AwsS3ServiceTest {
+
+    @Mock
+    private S3Client s3Client;
+
+    @Mock
+    private S3MultipartUploader multipartUploader;
+
+    @Mock
+    private S3MetadataCache metadataCache;
+
+    @Mock
+    private S3DiskCache diskCache;
+
+    @Mock
+    private ObjectMapper objectMapper;
+
+    @InjectMocks
+    private AwsS3Service awsS3Service;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(awsS3Service, "bucketName", "bucket");
+        ReflectionTestUtils.setField(awsS3Service, "urlBase", "https://bucket.s3.amazonaws.com/");
+    }
+
+    @Test
+    void paginaPasaPrefijoDelimitadorYToken() {
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(ListObjectsV2Response.builder()
+                .contents(objeto("facturas/2024/a.pdf"))
+                .commonPrefixes(CommonPrefix.builder().prefix("facturas/2024/enero/").build())
+                .isTruncated(true)
+                .nextContinuationToken("siguiente")
+                .build());
+
+        S3FilePage page = awsS3Service.listFilesPage("facturas/2024/", "/", 50, "actual");
+
+        ListObjectsV2Request request = capturarRequest();
+        assertEquals("bucket", request.bucket());
+        assertEquals("facturas/2024/", request.prefix());
+        assertEquals("/", request.delimiter());
+        assertEquals(50, request.maxKeys());
+        assertEquals("actual", request.continuationToken());
+
+        assertEquals(List.of("facturas/2024/enero/"), page.getPrefixes());
+        assertEquals("a.pdf", page.getFiles().get(0).getFileName());
+        assertEquals("https://bucket.s3.amazonaws.com/facturas/2024/a.pdf", page.getFiles().get(0).getUrl());
+        assertTrue(page.isHasMore());
+        assertEquals("siguiente", page.getNextContinuationToken());
+    }
+
+    @Test
+    void ultimaPaginaNoDevuelveToken() {
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(ListObjectsV2Response.builder()
+                .contents(objeto("a.pdf"))
+                .isTruncated(false)
+                .nextContinuationToken("ignorado")
+                .build());
+
+        S3FilePage page = awsS3Service.listFilesPage(null, null, 5000, null);
+
+        assertEquals(1000, capturarRequest().maxKeys());
+        assertFalse(page.isHasMore());
+        assertNull(page.getNextContinuationToken());
+    }
+
+    @Test
+    void listadoCompletoPideHastaMilClaves() {
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(ListObjectsV2Response.builder()
+                .contents(objeto("a.pdf"), objeto("b.pdf"))
+                .build());
+
+        List<S3FileInfo> files = awsS3Service.listFiles();
+
+        ListObjectsV2Request request = capturarRequest();
+        assertEquals(1000, request.maxKeys());
+        assertNull(request.prefix());
+        assertNull(request.continuationToken());
+        assertEquals(2, files.size());
+    }
+
+    @Test
+    void ifRangeConFechaExactaSeEnviaComoEtag() {
+        when(metadataCache.obtener("a.pdf")).thenReturn(new S3MetadataCache.Metadatos(10,
+                Instant.parse("2024-01-01T10:00:00Z"), "application/pdf", "\"v1\"", true));
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(new ResponseInputStream<>(
+                GetObjectResponse.builder().contentLength(5L).contentRange("bytes 0-4/10").build(),
+                AbortableInputStream.create(InputStream.nullInputStream())));
+
+        awsS3Service.openRangeDownload("a.pdf", "bytes=0-4", "Mon, 01 Jan 2024 10:00:00 GMT");
+
+        ArgumentCaptor<GetObjectRequest> request = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(s3Client).getObject(request.capture());
+        assertEquals("\"v1\"", request.getValue().ifMatch());
+        assertNull(request.getValue().ifUnmodifiedSince());
+        assertEquals("bytes=0-4", request.getValue().range());
+    }
+
+    @Test
+    void ifRangeConFechaDistintaNoPideElRango() {
+        when(metadataCache.obtener("a.pdf")).thenReturn(new S3MetadataCache.Metadatos(10,
+                Instant.parse("2024-01-01T09:00:00Z"), "application/pdf", "\"v1\"", true));
+
+        // Una fecha posterior a Last-Modified también se rechaza: If-Range exige coincidencia exacta
+        assertThrows(AwsS3Service.ArchivoModificadoException.class,
+                () -> awsS3Service.openRangeDownload("a.pdf", "bytes=0-4", "Mon, 01 Jan 2024 10:00:00 GMT"));
+        verify(s3Client, never()).getObject(any(GetObjectRequest.class));
+    }
+
+    private ListObjectsV2Request capturarRequest() {
+        ArgumentCaptor<ListObjectsV2Request> request = ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        verify(s3Client).listObjectsV2(request.capture());
+        return request.getValue();
+    }
+
+    private static S3Object objeto(String key) {
+        return S3Object.builder().key(key).size(10L).eTag("\"v1\"").lastModified(Instant.EPOCH).build();
+    }
+}
@@ -0,0 +1,172 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.tienda.microservicio.repository.BoletaRepository;
+
+@ExtendWith(MockitoExtension.class)
+class BoletaExportServiceTest {
+
+    @Mock
+    private BoletaRepository boletaRepo;
+
+    @Mock
+    private BoletaPdfService boletaPdfService;
+
+    private BoletaExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        exportService = new BoletaExportService(boletaRepo, boletaPdfService);
+        ReflectionTestUtils.setField(exportService, "paralelismo", 4);
+        ReflectionTestUtils.setField(exportService, "maxEnVuelo", 2);
+        ReflectionTestUtils.setField(exportService, "maxBoletas", 3);
+        exportService.inicializarExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        exportService.detenerExecutor();
+    }
+
+    @Test
+    void idsExplicitosConservanElOrdenSinRepetidos() {
+        assertEquals(List.of(3L, 1L, 2L), exportService.resolverIds(List.of(3L, 1L, 3L, 2L, 1L), null, null));
+    }
+
+    @Test
+    void rangoDeFechasLimitaLaConsulta() {
+        LocalDateTime desde = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime hasta = desde.plusMonths(1);
+        when(boletaRepo.findIdsByFechaBetween(any(), any(), any())).thenReturn(List.of(1L, 2L, 3L, 4L));
+
+        assertThrows(IllegalArgumentException.class, () -> exportService.resolverIds(null, desde, hasta));
+
+        ArgumentCaptor<Limit> limite = ArgumentCaptor.forClass(Limit.class);
+        verify(boletaRepo).findIdsByFechaBetween(any(), any(), limite.capture());
+        assertEquals(4, limite.getValue().max());
+    }
+
+    @Test
+    void pdfsSeGuardanSinComprimir() throws IOException {
+        when(boletaPdfService.obtenerPdfSinCachear(anyLong())).thenAnswer(invocation -> pdf(invocation.getArgument(0)));
+
+        Map<String, String> entradas = leerZip(exportar(List.of(1L, 2L, 3L)), ZipEntry.STORED);
+
+        assertEquals(Map.of("boleta_1.pdf", "pdf-1", "boleta_2.pdf", "pdf-2", "boleta_3.pdf", "pdf-3"), entradas);
+    }
+
+    @Test
+    void boletaQueFallaSeListaEnErrores() throws IOException {
+        when(boletaPdfService.obtenerPdfSinCachear(anyLong())).thenAnswer(invocation -> {
+            Long boletaId = invocation.getArgument(0);
+            if (boletaId == 2L) {
+                throw new IllegalStateException("Boleta no encontrada con ID: 2");
+            }
+            return pdf(boletaId);
+        });
+
+        Map<String, String> entradas = leerZip(exportar(List.of(1L, 2L, 3L)), -1);
+
+        assertEquals(3, entradas.size());
+        assertTrue(entradas.containsKey("boleta_1.pdf"));
+        assertTrue(entradas.containsKey("boleta_3.pdf"));
+        assertEquals("boleta_2.pdf: Boleta no encontrada con ID: 2", entradas.get("errores.txt"));
+    }
+
+    @Test
+    void nuncaHayMasDeMaxEnVueloPdfsPendientes() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        AtomicInteger enCurso = new AtomicInteger();
+        AtomicInteger maximo = new AtomicInteger();
+        when(boletaPdfService.obtenerPdfSinCachear(anyLong())).thenAnswer(invocation -> {
+            maximo.accumulateAndGet(enCurso.incrementAndGet(), Math::max);
+            try {
+                liberar.await(5, TimeUnit.SECONDS);
+                return pdf(invocation.getArgument(0));
+            } finally {
+                enCurso.decrementAndGet();
+            }
+        });
+
+        List<Long> ids = LongStream.rangeClosed(1, 10).boxed().toList();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<Void> exportacion = CompletableFuture.runAsync(() -> {
+            try {
+                exportService.exportarZip(ids, out);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // Hay 4 hilos libres pero solo se envían 2 PDFs mientras ninguno termina
+        verify(boletaPdfService, timeout(1000).times(2)).obtenerPdfSinCachear(anyLong());
+        Thread.sleep(100);
+        verify(boletaPdfService, times(2)).obtenerPdfSinCachear(anyLong());
+
+        liberar.countDown();
+        exportacion.get(5, TimeUnit.SECONDS);
+
+        verify(boletaPdfService, times(10)).obtenerPdfSinCachear(anyLong());
+        assertTrue(maximo.get() <= 2);
+        assertEquals(10, leerZip(out.toByteArray(), ZipEntry.STORED).size());
+    }
+
+    private byte[] exportar(List<Long> ids) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportarZip(ids, out);
+        return out.toByteArray();
+    }
+
+    private static Map<String, String> leerZip(byte[] zip, int metodoPdf) throws IOException {
+        Map<String, String> entradas = new HashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entrada;
+            while ((entrada = in.getNextEntry()) != null) {
+                if (metodoPdf >= 0 && entrada.getName().endsWith(".pdf")) {
+                    assertEquals(metodoPdf, entrada.getMethod());
+                }
+                entradas.put(entrada.getName(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entradas;
+    }
+
+    private static byte[] pdf(Long boletaId) {
+        return ("pdf-" + boletaId).getBytes(StandardCharsets.UTF_8);
+    }
+}
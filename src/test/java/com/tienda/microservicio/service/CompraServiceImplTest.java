@@ -0,0 +1,119 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.tienda.microservicio.dto.BoletaCreadaEvent;
+import com.tienda.microservicio.model.Boleta;
+import com.tienda.microservicio.model.DetalleBoleta;
+import com.tienda.microservicio.model.Producto;
+import com.tienda.microservicio.model.ProductoCompra;
+import com.tienda.microservicio.repository.BoletaRepository;
+
+@ExtendWith(MockitoExtension.class)
+class CompraServiceImplTest {
+
+    @Mock
+    private ProductoService productoService;
+
+    @Mock
+    private BoletaRepository boletaRepo;
+
+    @Mock
+    private BoletaPdfService boletaPdfService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private CompraServiceImpl compraService;
+
+    @BeforeEach
+    void setUp() {
+        // Se devuelven los productos pedidos salvo los ids negativos
+        when(productoService.getProductsByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream()
+                    .filter(id -> id > 0)
+                    .map(id -> new Producto(id, "Producto " + id, id * 10.0))
+                    .collect(Collectors.toMap(Producto::getId, Function.identity()));
+        });
+    }
+
+    @Test
+    void carritoDe40LineasPideLosProductosUnaSolaVez() {
+        when(boletaRepo.save(any(Boleta.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<ProductoCompra> carrito = new ArrayList<>();
+        for (long id = 1; id <= 40; id++) {
+            carrito.add(new ProductoCompra(id, 1));
+        }
+
+        Boleta boleta = compraService.procesarCompra(carrito);
+
+        verify(productoService, times(1)).getProductsByIds(anyCollection());
+        verify(eventPublisher).publishEvent(any(BoletaCreadaEvent.class));
+        assertEquals(40, boleta.getDetalles().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void lineasRepetidasSeAgrupan() {
+        when(boletaRepo.save(any(Boleta.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<ProductoCompra> carrito = List.of(
+                new ProductoCompra(1L, 2),
+                new ProductoCompra(2L, 1),
+                new ProductoCompra(1L, 3));
+
+        Boleta boleta = compraService.procesarCompra(carrito);
+
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(productoService).getProductsByIds(ids.capture());
+        assertEquals(Set.of(1L, 2L), Set.copyOf(ids.getValue()));
+
+        List<DetalleBoleta> detalles = boleta.getDetalles();
+        assertEquals(2, detalles.size());
+        assertEquals(1L, detalles.get(0).getProducto().getId());
+        assertEquals(5, detalles.get(0).getCantidad());
+        assertEquals(5 * 10.0 + 20.0, boleta.getTotal());
+    }
+
+    @Test
+    void informaTodosLosProductosFaltantes() {
+        List<ProductoCompra> carrito = List.of(
+                new ProductoCompra(1L, 1),
+                new ProductoCompra(-7L, 1),
+                new ProductoCompra(-3L, 2));
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> compraService.procesarCompra(carrito));
+
+        assertTrue(e.getMessage().contains("-7"));
+        assertTrue(e.getMessage().contains("-3"));
+        verify(boletaRepo, never()).save(any(Boleta.class));
+        verify(eventPublisher, never()).publishEvent(any(BoletaCreadaEvent.class));
+    }
+}
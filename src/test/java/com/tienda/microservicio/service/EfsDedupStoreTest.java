@@ -0,0 +1,148 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class EfsDedupStoreTest {
+
+    private static final byte[] CONTENIDO = "misma imagen de producto".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path raiz;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private EfsDedupStore dedupStore;
+
+    @BeforeEach
+    void setUp() {
+        EfsPathResolver pathResolver = new EfsPathResolver();
+        ReflectionTestUtils.setField(pathResolver, "efsMountPath", raiz.toString());
+        pathResolver.inicializar();
+
+        meterRegistry = new SimpleMeterRegistry();
+        dedupStore = new EfsDedupStore(pathResolver, new EfsFileWriter(pathResolver), meterRegistry);
+        ReflectionTestUtils.setField(dedupStore, "habilitado", true);
+        dedupStore.inicializar();
+    }
+
+    @Test
+    void contenidoRepetidoSeEnlazaAlMismoBlob() throws IOException {
+        dedupStore.guardar(archivo(), raiz.resolve("a.png"));
+        dedupStore.guardar(archivo(), raiz.resolve("b.png"));
+
+        assertEquals(dedupStore.inodo(raiz.resolve("a.png")), dedupStore.inodo(raiz.resolve("b.png")));
+        assertEquals(1, contarBlobs());
+        assertEquals(1.0, meterRegistry.get("efs.dedup.reused").counter().count());
+        assertEquals(CONTENIDO.length, meterRegistry.get("efs.dedup.bytes-saved").counter().count());
+    }
+
+    @Test
+    void contenidoReutilizadoTomaLaFechaDeLaSubida() throws IOException {
+        dedupStore.guardar(archivo(), raiz.resolve("a.png"));
+        Files.setLastModifiedTime(raiz.resolve("a.png"), FileTime.from(Instant.now().minus(Duration.ofDays(30))));
+        Instant antes = Instant.now().minusSeconds(1);
+
+        dedupStore.guardar(archivo(), raiz.resolve("b.png"));
+
+        assertTrue(Files.getLastModifiedTime(raiz.resolve("b.png")).toInstant().isAfter(antes));
+        // Mismo inodo: el nombre anterior comparte la fecha
+        assertEquals(Files.getLastModifiedTime(raiz.resolve("b.png")),
+                Files.getLastModifiedTime(raiz.resolve("a.png")));
+    }
+
+    @Test
+    void elBlobSeBorraConSuUltimoNombre() throws IOException {
+        dedupStore.guardar(archivo(), raiz.resolve("a.png"));
+        dedupStore.guardar(archivo(), raiz.resolve("b.png"));
+
+        borrar("a.png");
+        assertEquals(1, contarBlobs());
+        assertTrue(Files.exists(raiz.resolve("b.png")));
+
+        borrar("b.png");
+        assertEquals(0, contarBlobs());
+        assertFalse(Files.exists(raiz.resolve("b.png")));
+    }
+
+    @Test
+    void primerasSubidasSimultaneasCompartenUnSoloBlob() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch salida = new CountDownLatch(1);
+            List<Future<?>> subidas = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Path destino = raiz.resolve("f" + i + ".png");
+                subidas.add(executor.submit(() -> {
+                    salida.await();
+                    dedupStore.guardar(archivo(), destino);
+                    return null;
+                }));
+            }
+            salida.countDown();
+            for (Future<?> subida : subidas) {
+                subida.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, contarBlobs());
+        Object inodo = dedupStore.inodo(raiz.resolve("f0.png"));
+        for (int i = 1; i < 8; i++) {
+            assertEquals(inodo, dedupStore.inodo(raiz.resolve("f" + i + ".png")));
+        }
+        assertEquals(7.0, meterRegistry.get("efs.dedup.reused").counter().count());
+    }
+
+    @Test
+    void laLimpiezaNoBorraBlobsConNombres() throws IOException {
+        dedupStore.guardar(archivo(), raiz.resolve("a.png"));
+
+        dedupStore.limpiar();
+
+        assertEquals(1, contarBlobs());
+        assertTrue(Files.exists(raiz.resolve("a.png")));
+    }
+
+    private void borrar(String fileName) throws IOException {
+        Object inodo = dedupStore.inodo(raiz.resolve(fileName));
+        Files.delete(raiz.resolve(fileName));
+        dedupStore.liberar(inodo);
+    }
+
+    private long contarBlobs() throws IOException {
+        try (Stream<Path> archivos = Files.walk(raiz.resolve(EfsDedupStore.DIRECTORIO_BLOBS))) {
+            return archivos.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private MockMultipartFile archivo() {
+        return new MockMultipartFile("file", "producto.png", "image/png", CONTENIDO);
+    }
+}
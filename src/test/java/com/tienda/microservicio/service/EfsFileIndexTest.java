@@ -0,0 +1,70 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.tienda.microservicio.dto.EfsFileInfo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class EfsFileIndexTest {
+
+    private EfsFileIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new EfsFileIndex(new SimpleMeterRegistry());
+        index.inicializar();
+    }
+
+    @Test
+    void soloEstaListoTrasElPrimerEscaneo() {
+        assertFalse(index.isListo());
+
+        index.iniciarEscaneo();
+        index.aplicarEscaneo(Map.of("a.pdf", info("a.pdf", 10)));
+
+        assertTrue(index.isListo());
+        assertEquals(1, index.listar().size());
+    }
+
+    @Test
+    void escaneoQuitaLosArchivosBorradosPorTerceros() {
+        index.iniciarEscaneo();
+        index.aplicarEscaneo(Map.of("a.pdf", info("a.pdf", 10), "b.pdf", info("b.pdf", 20)));
+
+        index.iniciarEscaneo();
+        index.aplicarEscaneo(Map.of("a.pdf", info("a.pdf", 15)));
+
+        assertNull(index.obtener("b.pdf"));
+        assertEquals(15, index.obtener("a.pdf").getSize());
+    }
+
+    @Test
+    void cambiosPropiosDuranteElEscaneoNoSePisan() {
+        index.iniciarEscaneo();
+        index.aplicarEscaneo(Map.of("a.pdf", info("a.pdf", 10)));
+
+        // El escaneo leyó el directorio antes de la subida de c.pdf y del borrado de a.pdf
+        index.iniciarEscaneo();
+        index.registrar(info("c.pdf", 30));
+        index.eliminar("a.pdf");
+        index.aplicarEscaneo(Map.of("a.pdf", info("a.pdf", 10)));
+
+        assertNotNull(index.obtener("c.pdf"));
+        assertNull(index.obtener("a.pdf"));
+    }
+
+    private EfsFileInfo info(String fileName, long size) {
+        return new EfsFileInfo(fileName, fileName, size, Instant.EPOCH, "application/pdf", "/app/efs/" + fileName);
+    }
+}
@@ -0,0 +1,97 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class EfsFileWriterTest {
+
+    private static final byte[] CONTENIDO = "contenido de la subida".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path raiz;
+
+    private EfsFileWriter fileWriter;
+
+    @BeforeEach
+    void setUp() {
+        EfsPathResolver pathResolver = new EfsPathResolver();
+        ReflectionTestUtils.setField(pathResolver, "efsMountPath", raiz.toString());
+        pathResolver.inicializar();
+
+        fileWriter = new EfsFileWriter(pathResolver);
+        ReflectionTestUtils.setField(fileWriter, "politica", EfsFileWriter.PoliticaFsync.FILE_AND_DIRECTORY);
+    }
+
+    @Test
+    void escribeSinDejarTemporales() throws IOException {
+        fileWriter.escribir(new ByteArrayInputStream(CONTENIDO), raiz.resolve("a.pdf"));
+
+        assertArrayEquals(CONTENIDO, Files.readAllBytes(raiz.resolve("a.pdf")));
+        assertEquals(1, contarArchivos());
+    }
+
+    @Test
+    void nombreDeLongitudMaximaNoAlargaElTemporal() throws IOException {
+        // 255 bytes, el máximo de un nombre en ext4 y en EFS
+        Path destino = raiz.resolve("a".repeat(251) + ".pdf");
+
+        fileWriter.escribir(new ByteArrayInputStream(CONTENIDO), destino);
+
+        assertArrayEquals(CONTENIDO, Files.readAllBytes(destino));
+        assertEquals(1, contarArchivos());
+    }
+
+    @Test
+    void subidaFallidaNoPublicaNiDejaTemporales() {
+        InputStream roto = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("conexión cerrada");
+            }
+        };
+
+        assertThrows(IOException.class, () -> fileWriter.escribir(roto, raiz.resolve("a.pdf")));
+
+        assertFalse(Files.exists(raiz.resolve("a.pdf")));
+        assertEquals(0, contarArchivos());
+    }
+
+    @Test
+    void barridoBorraSoloTemporalesAntiguos() throws IOException {
+        Path antiguo = Files.writeString(raiz.resolve(".tmp-1" + EfsFileWriter.SUFIJO_TEMPORAL), "parcial");
+        Files.setLastModifiedTime(antiguo, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        Path reciente = Files.writeString(raiz.resolve(".tmp-2" + EfsFileWriter.SUFIJO_TEMPORAL), "en curso");
+        Files.writeString(raiz.resolve("c.pdf"), "publicado");
+
+        fileWriter.barrerTemporales();
+
+        assertFalse(Files.exists(antiguo));
+        assertTrue(Files.exists(reciente));
+        assertTrue(Files.exists(raiz.resolve("c.pdf")));
+    }
+
+    private long contarArchivos() throws IOException {
+        try (Stream<Path> archivos = Files.list(raiz)) {
+            return archivos.count();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.tienda.microservicio.dto.EfsMigrationStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class EfsLayoutMigratorTest {
+
+    @TempDir
+    Path raiz;
+
+    private EfsPathResolver resolver;
+
+    private EfsLayoutMigrator migrator;
+
+    @BeforeEach
+    void setUp() {
+        resolver = new EfsPathResolver();
+        ReflectionTestUtils.setField(resolver, "efsMountPath", raiz.toString());
+        ReflectionTestUtils.setField(resolver, "fragmentado", true);
+        migrator = new EfsLayoutMigrator(resolver, new EfsFileIndex(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(migrator, "paralelismo", 2);
+        migrator.inicializarExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        migrator.detenerExecutor();
+    }
+
+    @Test
+    void mueveLosArchivosYNoSobrescribeLosYaMigrados() throws Exception {
+        Files.writeString(raiz.resolve("a.pdf"), "antiguo-a");
+        Files.writeString(raiz.resolve("b.pdf"), "antiguo-b");
+        resolver.inicializar();
+        // b.pdf se volvió a subir con el layout nuevo antes de migrar
+        Files.writeString(resolver.ubicarNuevo("b.pdf"), "nuevo-b");
+
+        EfsMigrationStatus estado = migrarYEsperar();
+
+        assertEquals(1, estado.getMoved());
+        assertEquals(1, estado.getConflicts());
+        assertFalse(Files.exists(raiz.resolve("a.pdf")));
+        assertEquals("antiguo-a", Files.readString(resolver.ubicarNuevo("a.pdf")));
+        assertEquals("nuevo-b", Files.readString(resolver.ubicarNuevo("b.pdf")));
+        assertTrue(Files.exists(raiz.resolve("b.pdf")));
+    }
+
+    @Test
+    void elExecutorSeReutilizaEntreMigraciones() throws Exception {
+        resolver.inicializar();
+        Files.writeString(raiz.resolve("a.pdf"), "a");
+        assertEquals(1, migrarYEsperar().getMoved());
+
+        Files.writeString(raiz.resolve("c.pdf"), "c");
+        assertEquals(1, migrarYEsperar().getMoved());
+    }
+
+    @Test
+    void origenBorradoTrasEnlazarNoSeResucita() throws Exception {
+        migrator.detenerExecutor();
+        migrator = new EfsLayoutMigrator(resolver, new EfsFileIndex(new SimpleMeterRegistry())) {
+            @Override
+            void enlazar(Path destino, Path origen) throws IOException {
+                super.enlazar(destino, origen);
+                // deleteFile concurrente, que aún resuelve la ruta plana
+                Files.delete(origen);
+            }
+        };
+        migrator.inicializarExecutor();
+        Files.writeString(raiz.resolve("a.pdf"), "borrado");
+        resolver.inicializar();
+
+        EfsMigrationStatus estado = migrarYEsperar();
+
+        assertEquals(0, estado.getMoved());
+        assertFalse(Files.exists(raiz.resolve("a.pdf")));
+        assertFalse(Files.exists(resolver.ubicarNuevo("a.pdf")));
+    }
+
+    private EfsMigrationStatus migrarYEsperar() throws InterruptedException {
+        assertTrue(migrator.iniciar());
+        for (int i = 0; i < 500 && migrator.estado().isRunning(); i++) {
+            Thread.sleep(10);
+        }
+        EfsMigrationStatus estado = migrator.estado();
+        assertFalse(estado.isRunning());
+        return estado;
+    }
+}
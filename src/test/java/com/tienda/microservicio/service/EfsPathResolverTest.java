@@ -0,0 +1,57 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class EfsPathResolverTest {
+
+    @TempDir
+    Path raiz;
+
+    private EfsPathResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        resolver = new EfsPathResolver();
+        ReflectionTestUtils.setField(resolver, "efsMountPath", raiz.toString());
+        ReflectionTestUtils.setField(resolver, "fragmentado", true);
+    }
+
+    @Test
+    void archivoNuevoVaASuSubdirectorio() throws IOException {
+        resolver.inicializar();
+
+        Path destino = resolver.ubicarNuevo("a.pdf");
+
+        assertEquals(raiz, destino.getParent().getParent().getParent());
+        assertTrue(Files.isDirectory(destino.getParent()));
+        assertTrue(resolver.esDirectorioFragmento(raiz.relativize(destino).subpath(0, 1)));
+        assertEquals(destino, resolver.ubicar("a.pdf"));
+    }
+
+    @Test
+    void archivoSinMigrarSeSigueEncontrandoEnLaRaiz() throws IOException {
+        Files.writeString(raiz.resolve("antiguo.pdf"), "contenido");
+        resolver.inicializar();
+
+        assertTrue(resolver.isMigracionPendiente());
+        assertEquals(raiz.resolve("antiguo.pdf"), resolver.ubicar("antiguo.pdf"));
+
+        Path destino = resolver.ubicarNuevo("antiguo.pdf");
+        Files.move(raiz.resolve("antiguo.pdf"), destino);
+        resolver.revisarMigracion();
+
+        assertFalse(resolver.isMigracionPendiente());
+        assertEquals(destino, resolver.ubicar("antiguo.pdf"));
+    }
+}
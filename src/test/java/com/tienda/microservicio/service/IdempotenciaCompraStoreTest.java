@@ -0,0 +1,148 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.tienda.microservicio.model.Boleta;
+import com.tienda.microservicio.model.ProductoCompra;
+
+class IdempotenciaCompraStoreTest {
+
+    private IdempotenciaCompraStore store;
+
+    private AtomicInteger ejecuciones;
+
+    @BeforeEach
+    void setUp() {
+        store = new IdempotenciaCompraStore();
+        store.inicializar();
+        ejecuciones = new AtomicInteger();
+    }
+
+    @Test
+    void reintentoDevuelveLaBoletaOriginal() {
+        Boleta primera = store.ejecutar("clave-1", "a", this::nuevaBoleta);
+        Boleta reintento = store.ejecutar("clave-1", "a", this::nuevaBoleta);
+
+        assertSame(primera, reintento);
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void duplicadosConcurrentesEsperanALaEjecucionEnCurso() throws Exception {
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boleta> original = executor.submit(() -> store.ejecutar("clave-2", "a", () -> {
+                enCurso.countDown();
+                await(liberar);
+                return nuevaBoleta();
+            }));
+            enCurso.await(5, TimeUnit.SECONDS);
+
+            Future<Boleta> duplicado = executor.submit(() -> store.ejecutar("clave-2", "a", this::nuevaBoleta));
+            liberar.countDown();
+
+            assertSame(original.get(5, TimeUnit.SECONDS), duplicado.get(5, TimeUnit.SECONDS));
+            assertEquals(1, ejecuciones.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void claveReutilizadaConOtroCarritoEsRechazada() {
+        store.ejecutar("clave-3", "a", this::nuevaBoleta);
+
+        assertThrows(IdempotenciaCompraStore.ClaveReutilizadaException.class, () -> store.ejecutar("clave-3", "b", this::nuevaBoleta));
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void compraFallidaLiberaLaClave() {
+        assertThrows(RuntimeException.class, () -> store.ejecutar("clave-4", "a", () -> {
+            throw new RuntimeException("Productos no encontrados: [9]");
+        }));
+
+        store.ejecutar("clave-4", "a", this::nuevaBoleta);
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void errorEnLaCompraNoDejaEsperandoALosDuplicados() {
+        assertThrows(AssertionError.class, () -> store.ejecutar("clave-5", "a", () -> {
+            throw new AssertionError("fallo inesperado");
+        }));
+
+        // La clave quedó libre: no hay un futuro pendiente que haga esperar al reintento
+        store.ejecutar("clave-5", "a", this::nuevaBoleta);
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void elLimiteNoDescartaComprasEnCurso() throws Exception {
+        ReflectionTestUtils.setField(store, "numeroSegmentos", 1);
+        ReflectionTestUtils.setField(store, "maxClavesPorSegmento", 1);
+        store.inicializar();
+
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boleta> original = executor.submit(() -> store.ejecutar("en-curso", "a", () -> {
+                enCurso.countDown();
+                await(liberar);
+                return nuevaBoleta();
+            }));
+            enCurso.await(5, TimeUnit.SECONDS);
+
+            // Otra clave supera el límite del segmento mientras la primera sigue en curso
+            store.ejecutar("otra", "a", this::nuevaBoleta);
+
+            Future<Boleta> duplicado = executor.submit(() -> store.ejecutar("en-curso", "a", this::nuevaBoleta));
+            liberar.countDown();
+
+            assertSame(original.get(5, TimeUnit.SECONDS), duplicado.get(5, TimeUnit.SECONDS));
+            assertEquals(2, ejecuciones.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void huellaNoDependeDelOrdenDeLasLineas() {
+        String huella = IdempotenciaCompraStore.huella(List.of(new ProductoCompra(1L, 2), new ProductoCompra(5L, 1)));
+
+        assertEquals(huella, IdempotenciaCompraStore.huella(List.of(new ProductoCompra(5L, 1), new ProductoCompra(1L, 2))));
+        assertNotEquals(huella, IdempotenciaCompraStore.huella(List.of(new ProductoCompra(1L, 1), new ProductoCompra(5L, 2))));
+    }
+
+    private Boleta nuevaBoleta() {
+        Boleta boleta = new Boleta();
+        boleta.setId((long) ejecuciones.incrementAndGet());
+        return boleta;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
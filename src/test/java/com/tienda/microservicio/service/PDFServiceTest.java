@@ -0,0 +1,28 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+class PDFServiceTest {
+
+    @Test
+    void montoRedondeaComoStringFormat() {
+        StringBuilder buffer = new StringBuilder();
+        // Valores cuyo double queda justo por debajo del medio céntimo
+        for (double valor : new double[] { 1.005, 2.675, 1.115, 0.125, 10.0, 0.0, 19.999, 1234.5, 99999.995 }) {
+            assertEquals(String.format(Locale.ROOT, "$%.2f", valor), PDFService.formatearMonto(buffer, valor),
+                    "valor " + valor);
+        }
+    }
+
+    @Test
+    void montosDeBordeConocidos() {
+        StringBuilder buffer = new StringBuilder();
+        assertEquals("$1.01", PDFService.formatearMonto(buffer, 1.005));
+        assertEquals("$2.68", PDFService.formatearMonto(buffer, 2.675));
+        assertEquals("$0.05", PDFService.formatearMonto(buffer, 0.05));
+    }
+}
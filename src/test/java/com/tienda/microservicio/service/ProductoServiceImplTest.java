@@ -0,0 +1,201 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.StreamSupport;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.tienda.microservicio.dto.ProductoPage;
+import com.tienda.microservicio.model.Producto;
+import com.tienda.microservicio.repository.ProductoRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ProductoServiceImplTest {
+
+    private ProductoRepository productoRepository;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private ProductoServiceImpl productoService;
+
+    @BeforeEach
+    void setUp() {
+        productoRepository = mock(ProductoRepository.class);
+        when(productoRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            Iterable<Long> ids = invocation.getArgument(0);
+            return StreamSupport.stream(ids.spliterator(), false)
+                    .map(id -> new Producto(id, "Producto " + id, id * 10.0))
+                    .toList();
+        });
+
+        jdbcTemplate = mock(JdbcTemplate.class);
+        productoService = new ProductoServiceImpl(productoRepository, new SimpleMeterRegistry(), jdbcTemplate,
+                new ObjectMapper());
+        ReflectionTestUtils.setField(productoService, "tamanoLote", 10);
+        productoService.inicializarCaches();
+    }
+
+    @Test
+    void idsNoCacheadosSeConsultanEnLotes() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 35; id++) {
+            ids.add(id);
+        }
+
+        Map<Long, Producto> productos = productoService.getProductsByIds(ids);
+
+        assertEquals(35, productos.size());
+        verify(productoRepository, times(4)).findAllById(anyIterable());
+    }
+
+    @Test
+    void productosCacheadosNoVuelvenAConsultarse() {
+        productoService.getProductsByIds(List.of(1L, 2L, 3L));
+        productoService.getProductsByIds(List.of(1L, 2L, 3L));
+        productoService.getProductsByIds(List.of(2L));
+
+        verify(productoRepository, times(1)).findAllById(anyIterable());
+    }
+
+    @Test
+    void crearProductoInvalidaElCatalogo() {
+        when(productoRepository.findAll()).thenReturn(List.of(new Producto(1L, "Producto 1", 10.0)));
+        when(productoRepository.save(any(Producto.class))).thenAnswer(invocation -> {
+            Producto producto = invocation.getArgument(0);
+            producto.setId(2L);
+            return producto;
+        });
+
+        productoService.getAllProducts();
+        productoService.getAllProducts();
+        verify(productoRepository, times(1)).findAll();
+
+        productoService.createProduct(new Producto(null, "Producto 2", 20.0));
+        productoService.getAllProducts();
+        verify(productoRepository, times(2)).findAll();
+
+        // El catálogo precarga la caché por id: no hay consultas adicionales
+        productoService.getProductsByIds(List.of(1L, 2L));
+        verify(productoRepository, times(0)).findAllById(anyIterable());
+    }
+
+    @Test
+    void paginaPideUnoDeMasYDevuelveElUltimoIdComoCursor() {
+        when(productoRepository.findByIdGreaterThanOrderByIdAsc(eq(4L), any(Limit.class)))
+                .thenReturn(productos(5, 6, 7));
+
+        ProductoPage page = productoService.getProductsPage(4L, 2);
+
+        assertEquals(3, limitePedido().max());
+        assertEquals(List.of(5L, 6L), page.getProductos().stream().map(Producto::getId).toList());
+        assertEquals(6L, page.getNextCursor());
+        assertTrue(page.isHasMore());
+    }
+
+    @Test
+    void ultimaPaginaNoDevuelveCursor() {
+        when(productoRepository.findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), any(Limit.class)))
+                .thenReturn(productos(1, 2));
+
+        ProductoPage page = productoService.getProductsPage(null, 5);
+
+        assertEquals(2, page.getProductos().size());
+        assertNull(page.getNextCursor());
+        assertFalse(page.isHasMore());
+    }
+
+    @Test
+    void tamanoDePaginaSeAcota() {
+        when(productoRepository.findByIdGreaterThanOrderByIdAsc(any(Long.class), any(Limit.class)))
+                .thenReturn(List.of());
+
+        productoService.getProductsPage(null, 10000);
+        productoService.getProductsPage(null, 0);
+        productoService.getProductsPage(null, null);
+
+        ArgumentCaptor<Limit> limites = ArgumentCaptor.forClass(Limit.class);
+        verify(productoRepository, times(3)).findByIdGreaterThanOrderByIdAsc(any(Long.class), limites.capture());
+        assertEquals(List.of(501, 2, 51), limites.getAllValues().stream().map(Limit::max).toList());
+    }
+
+    @Test
+    void exportacionEscribeUnaLineaJsonPorFila() throws Exception {
+        doAnswer(invocation -> {
+            PreparedStatementCreator consulta = invocation.getArgument(0);
+            RowCallbackHandler escritor = invocation.getArgument(1);
+
+            // El cursor se abre solo hacia delante y con el fetch size configurado
+            Connection conexion = mock(Connection.class);
+            PreparedStatement ps = mock(PreparedStatement.class);
+            when(conexion.prepareStatement(any(String.class), eq(ResultSet.TYPE_FORWARD_ONLY),
+                    eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(ps);
+            consulta.createPreparedStatement(conexion);
+            verify(ps).setFetchSize(500);
+
+            escritor.processRow(fila(1, "Producto 1", 10.0));
+            escritor.processRow(fila(2, "Producto 2", 20.5));
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        productoService.exportProducts(out);
+
+        assertEquals("""
+                {"id":1,"nombre":"Producto 1","precio":10.0}
+                {"id":2,"nombre":"Producto 2","precio":20.5}
+                """, out.toString(StandardCharsets.UTF_8));
+    }
+
+    private Limit limitePedido() {
+        ArgumentCaptor<Limit> limite = ArgumentCaptor.forClass(Limit.class);
+        verify(productoRepository).findByIdGreaterThanOrderByIdAsc(any(Long.class), limite.capture());
+        return limite.getValue();
+    }
+
+    private static List<Producto> productos(long... ids) {
+        List<Producto> productos = new ArrayList<>();
+        for (long id : ids) {
+            productos.add(new Producto(id, "Producto " + id, id * 10.0));
+        }
+        return productos;
+    }
+
+    private static ResultSet fila(long id, String nombre, double precio) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(id);
+        when(rs.getString("nombre")).thenReturn(nombre);
+        when(rs.getDouble("precio")).thenReturn(precio);
+        return rs;
+    }
+}
@@ -0,0 +1,174 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.tienda.microservicio.dto.BatchDeleteResponse;
+import com.tienda.microservicio.dto.BatchUploadResponse;
+import com.tienda.microservicio.dto.UploadResponse;
+
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+@ExtendWith(MockitoExtension.class)
+class S3BatchServiceTest {
+
+    @Mock
+    private S3Client s3Client;
+
+    @Mock
+    private AwsS3Service awsS3Service;
+
+    @Mock
+    private S3MetadataCache metadataCache;
+
+    @Mock
+    private S3DiskCache diskCache;
+
+    private S3BatchService batchService;
+
+    @BeforeEach
+    void setUp() {
+        batchService = new S3BatchService(s3Client, awsS3Service, metadataCache, diskCache);
+        ReflectionTestUtils.setField(batchService, "bucketName", "bucket");
+        ReflectionTestUtils.setField(batchService, "paralelismo", 3);
+        ReflectionTestUtils.setField(batchService, "tamanoMaximo", DataSize.ofBytes(100));
+        batchService.inicializarExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchService.detenerExecutor();
+    }
+
+    @Test
+    void borradoSeParteEnLotesDeMilClavesSinRepetidas() {
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class)))
+                .thenReturn(DeleteObjectsResponse.builder().build());
+        List<String> claves = new ArrayList<>(IntStream.range(0, 2500).mapToObj(i -> "k" + i).toList());
+        claves.add("k0");
+
+        BatchDeleteResponse response = batchService.deleteFiles(claves);
+
+        ArgumentCaptor<DeleteObjectsRequest> requests = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(s3Client, times(3)).deleteObjects(requests.capture());
+        assertEquals(List.of(1000, 1000, 500), requests.getAllValues().stream()
+                .map(request -> request.delete().objects().size())
+                .toList());
+        assertEquals("k1000", requests.getAllValues().get(1).delete().objects().get(0).key());
+        assertTrue(requests.getAllValues().stream().allMatch(request -> request.delete().quiet()));
+
+        assertEquals(2500, response.getDeleted().size());
+        assertTrue(response.isSuccess());
+    }
+
+    @Test
+    void erroresDeS3SeAsignanASuClave() {
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(DeleteObjectsResponse.builder()
+                .errors(S3Error.builder().key("b").code("AccessDenied").message("Access Denied").build())
+                .build());
+
+        BatchDeleteResponse response = batchService.deleteFiles(List.of("a", "b", "c"));
+
+        assertEquals(List.of("a", "c"), response.getDeleted());
+        assertEquals(Map.of("b", "AccessDenied: Access Denied"), response.getErrors());
+        assertFalse(response.isSuccess());
+        verify(metadataCache).marcarAusente("a");
+        verify(metadataCache).invalidar("b");
+        verify(metadataCache, never()).marcarAusente("b");
+        verify(diskCache).invalidar("b");
+    }
+
+    @Test
+    void loteQueFallaEnteroMarcaTodasSusClaves() {
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class)))
+                .thenThrow(S3Exception.builder().statusCode(503).message("Slow Down").build());
+
+        BatchDeleteResponse response = batchService.deleteFiles(List.of("a", "b"));
+
+        assertTrue(response.getDeleted().isEmpty());
+        assertEquals(List.of("a", "b"), List.copyOf(response.getErrors().keySet()));
+        assertTrue(response.getErrors().get("a").startsWith("Error de S3"));
+    }
+
+    @Test
+    void errorDeClienteEnUnLoteNoPierdeLosAnteriores() {
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class)))
+                .thenReturn(DeleteObjectsResponse.builder().build())
+                .thenThrow(SdkClientException.create("Timeout"));
+        List<String> claves = IntStream.range(0, 1500).mapToObj(i -> "k" + i).toList();
+
+        BatchDeleteResponse response = batchService.deleteFiles(claves);
+
+        assertEquals(1000, response.getDeleted().size());
+        assertEquals(500, response.getErrors().size());
+        assertEquals("Error de S3: Timeout", response.getErrors().get("k1000"));
+        assertFalse(response.isSuccess());
+        verify(metadataCache).marcarAusente("k0");
+        verify(metadataCache).invalidar("k1499");
+        verify(diskCache).invalidar("k0");
+    }
+
+    @Test
+    void subidaEnLoteConservaElOrdenYValidaCadaArchivo() {
+        MultipartFile lento = archivo("lento.pdf", 10);
+        MultipartFile vacio = archivo("vacio.pdf", 0);
+        MultipartFile grande = archivo("grande.pdf", 500);
+        MultipartFile rapido = archivo("rapido.pdf", 10);
+        when(awsS3Service.uploadFile(any(MultipartFile.class))).thenAnswer(invocation -> {
+            MultipartFile file = invocation.getArgument(0);
+            if (file == lento) {
+                Thread.sleep(200);
+            }
+            return new UploadResponse("ok", file.getOriginalFilename(), "url", file.getSize(), true);
+        });
+
+        BatchUploadResponse response = batchService.uploadFiles(List.of(lento, vacio, grande, rapido));
+
+        List<UploadResponse> resultados = response.getResults();
+        assertEquals("lento.pdf", resultados.get(0).getFileName());
+        assertTrue(resultados.get(1).getMessage().startsWith("Archivo vacío"));
+        assertTrue(resultados.get(2).getMessage().startsWith("El archivo es demasiado grande"));
+        assertEquals("rapido.pdf", resultados.get(3).getFileName());
+        assertEquals(2, response.getSucceeded());
+        assertEquals(2, response.getFailed());
+        assertFalse(response.isSuccess());
+    }
+
+    private static MultipartFile archivo(String nombre, long tamano) {
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getOriginalFilename()).thenReturn(nombre);
+        when(file.isEmpty()).thenReturn(tamano == 0);
+        if (tamano > 0) {
+            when(file.getSize()).thenReturn(tamano);
+        }
+        return file;
+    }
+}
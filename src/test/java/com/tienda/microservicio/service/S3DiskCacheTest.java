@@ -0,0 +1,159 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.tienda.microservicio.dto.S3FileDownload;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+class S3DiskCacheTest {
+
+    private static final byte[] CONTENIDO = "contenido del objeto".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directorio;
+
+    private S3Client s3Client;
+
+    private S3MetadataCache metadataCache;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private S3DiskCache diskCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        s3Client = mock(S3Client.class);
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> respuesta("\"v1\""));
+
+        meterRegistry = new SimpleMeterRegistry();
+        metadataCache = new S3MetadataCache(meterRegistry);
+        metadataCache.inicializar();
+
+        diskCache = new S3DiskCache(s3Client, metadataCache, meterRegistry);
+        ReflectionTestUtils.setField(diskCache, "bucketName", "bucket");
+        ReflectionTestUtils.setField(diskCache, "habilitada", true);
+        ReflectionTestUtils.setField(diskCache, "directorio", directorio.toString());
+        diskCache.inicializar();
+    }
+
+    @Test
+    void segundaDescargaSeSirveDesdeDiscoSinGet() throws IOException {
+        assertArrayEquals(CONTENIDO, leer(diskCache.abrir("docs/a.txt", "a.txt")));
+        assertArrayEquals(CONTENIDO, leer(diskCache.abrir("docs/a.txt", "a.txt")));
+
+        verify(s3Client, times(1)).getObject(any(GetObjectRequest.class));
+        verify(s3Client, never()).headObject(any(HeadObjectRequest.class));
+        assertEquals(1.0, meterRegistry.get("s3.disk-cache.hits").counter().count());
+        assertEquals(CONTENIDO.length, meterRegistry.get("s3.disk-cache.bytes-saved").counter().count());
+    }
+
+    @Test
+    void etagDistintoDescartaLaCopiaEnDisco() throws IOException {
+        leer(diskCache.abrir("a.txt", "a.txt"));
+
+        // Otro proceso sobrescribió el objeto: la caché de metadatos ya no lo conoce
+        metadataCache.invalidar("a.txt");
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                .contentLength((long) CONTENIDO.length)
+                .eTag("\"v2\"")
+                .build());
+
+        leer(diskCache.abrir("a.txt", "a.txt"));
+
+        verify(s3Client, times(2)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    void invalidarObligaAVolverAS3() throws IOException {
+        leer(diskCache.abrir("a.txt", "a.txt"));
+        diskCache.invalidar("a.txt");
+        leer(diskCache.abrir("a.txt", "a.txt"));
+
+        verify(s3Client, times(2)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    void falloSirveElGetMientrasCopiaADisco() throws IOException {
+        S3FileDownload download = diskCache.abrir("a.txt", "a.txt");
+
+        // Nada escrito en disco todavía: el primer byte no espera a la copia
+        assertEquals(0, contarCopias());
+        assertEquals(CONTENIDO.length, download.getContentLength());
+
+        assertArrayEquals(CONTENIDO, leer(download));
+        assertEquals(1, contarCopias());
+    }
+
+    @Test
+    void descargaCortadaNoDejaCopiaYLaSiguienteVaAS3() throws IOException {
+        try (InputStream in = diskCache.abrir("a.txt", "a.txt").getContent()) {
+            in.read(new byte[4]);
+        }
+        assertEquals(0, contarCopias());
+
+        assertArrayEquals(CONTENIDO, leer(diskCache.abrir("a.txt", "a.txt")));
+        verify(s3Client, times(2)).getObject(any(GetObjectRequest.class));
+        assertEquals(1, contarCopias());
+    }
+
+    @Test
+    void falloSimultaneoVaDirectoAS3SinEsperarLaCopia() throws IOException {
+        S3FileDownload primera = diskCache.abrir("a.txt", "a.txt");
+
+        assertNull(diskCache.abrir("a.txt", "a.txt"));
+
+        leer(primera);
+        assertArrayEquals(CONTENIDO, leer(diskCache.abrir("a.txt", "a.txt")));
+        verify(s3Client, times(1)).getObject(any(GetObjectRequest.class));
+    }
+
+    private long contarCopias() throws IOException {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return archivos.filter(archivo -> archivo.getFileName().toString().endsWith(".bin")).count();
+        }
+    }
+
+    private ResponseInputStream<GetObjectResponse> respuesta(String eTag) {
+        GetObjectResponse response = GetObjectResponse.builder()
+                .contentLength((long) CONTENIDO.length)
+                .contentType("text/plain")
+                .eTag(eTag)
+                .build();
+        return new ResponseInputStream<>(response, AbortableInputStream.create(new ByteArrayInputStream(CONTENIDO)));
+    }
+
+    private byte[] leer(S3FileDownload download) throws IOException {
+        try (InputStream in = download.getContent()) {
+            return in.readAllBytes();
+        }
+    }
+}
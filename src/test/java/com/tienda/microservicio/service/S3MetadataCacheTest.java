@@ -0,0 +1,66 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+class S3MetadataCacheTest {
+
+    private S3MetadataCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new S3MetadataCache(new SimpleMeterRegistry());
+        cache.inicializar();
+    }
+
+    @Test
+    void claveAusenteSeRecuerdaHastaQueSeInvalida() {
+        cache.marcarAusente("a.pdf");
+
+        assertFalse(cache.obtener("a.pdf").existe());
+
+        cache.invalidar("a.pdf");
+        assertNull(cache.obtener("a.pdf"));
+    }
+
+    @Test
+    void listadoNoPisaMetadatosCompletosDeLaMismaVersion() {
+        cache.guardar("a.pdf", HeadObjectResponse.builder()
+                .contentLength(10L)
+                .contentType("application/pdf")
+                .eTag("\"v1\"")
+                .lastModified(Instant.EPOCH)
+                .build());
+
+        cache.guardar(S3Object.builder().key("a.pdf").size(10L).eTag("\"v1\"").build());
+        assertEquals("application/pdf", cache.obtener("a.pdf").contentType());
+
+        cache.guardar(S3Object.builder().key("a.pdf").size(20L).eTag("\"v2\"").build());
+        S3MetadataCache.Metadatos metadatos = cache.obtener("a.pdf");
+        assertEquals(20L, metadatos.size());
+        assertFalse(metadatos.completos());
+        assertTrue(metadatos.existe());
+    }
+
+    @Test
+    void getConRangoNoSeCachea() {
+        cache.guardar("a.pdf", GetObjectResponse.builder()
+                .contentLength(5L)
+                .contentRange("bytes 0-4/100")
+                .build());
+
+        assertNull(cache.obtener("a.pdf"));
+    }
+}
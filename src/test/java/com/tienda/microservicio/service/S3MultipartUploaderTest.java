@@ -0,0 +1,113 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+class S3MultipartUploaderTest {
+
+    private static final int MB = 1024 * 1024;
+
+    private S3AsyncClient s3Client;
+
+    private S3MultipartUploader uploader;
+
+    @BeforeEach
+    void setUp() {
+        s3Client = mock(S3AsyncClient.class);
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(
+                        CreateMultipartUploadResponse.builder().uploadId("upload-1").build()));
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()));
+        when(s3Client.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build()));
+
+        uploader = new S3MultipartUploader(s3Client);
+        ReflectionTestUtils.setField(uploader, "bucketName", "bucket");
+        ReflectionTestUtils.setField(uploader, "tamanoParte", DataSize.ofMegabytes(5));
+        ReflectionTestUtils.setField(uploader, "maxBuffers", 3);
+        uploader.inicializar();
+    }
+
+    @Test
+    void archivoSeSubeEnPartesYSeCompletaEnOrden() throws IOException {
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenAnswer(invocation -> {
+                    UploadPartRequest request = invocation.getArgument(0);
+                    return CompletableFuture.completedFuture(
+                            UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build());
+                });
+
+        uploader.subir("clave", "application/pdf", new ByteArrayInputStream(new byte[12 * MB]));
+
+        ArgumentCaptor<UploadPartRequest> partes = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(s3Client, times(3)).uploadPart(partes.capture(), any(AsyncRequestBody.class));
+        assertEquals(List.of(5L * MB, 5L * MB, 2L * MB), partes.getAllValues().stream()
+                .sorted((a, b) -> a.partNumber() - b.partNumber())
+                .map(UploadPartRequest::contentLength)
+                .toList());
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> completar = ArgumentCaptor
+                .forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(completar.capture());
+        assertEquals(List.of(1, 2, 3), completar.getValue().multipartUpload().parts().stream()
+                .map(CompletedPart::partNumber)
+                .toList());
+        verify(s3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void parteQueFallaAbortaLaSubidaSinReintentosPropios() {
+        AtomicInteger intentosParte2 = new AtomicInteger();
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenAnswer(invocation -> {
+                    UploadPartRequest request = invocation.getArgument(0);
+                    if (request.partNumber() == 2) {
+                        intentosParte2.incrementAndGet();
+                        return CompletableFuture.failedFuture(
+                                S3Exception.builder().statusCode(503).message("Slow Down").build());
+                    }
+                    return CompletableFuture.completedFuture(
+                            UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build());
+                });
+
+        assertThrows(S3Exception.class, () -> uploader.subir("clave", "application/pdf",
+                new ByteArrayInputStream(new byte[12 * MB])));
+
+        // Los reintentos ya los hizo el SDK dentro de la llamada
+        assertEquals(1, intentosParte2.get());
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+}
@@ -0,0 +1,126 @@
+package com.tienda.microservicio.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.tienda.microservicio.dto.PresignedUpload;
+import com.tienda.microservicio.dto.S3FileInfo;
+import com.tienda.microservicio.dto.UploadResponse;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+@ExtendWith(MockitoExtension.class)
+class S3PresignServiceTest {
+
+    @Mock
+    private AwsS3Service awsS3Service;
+
+    @Mock
+    private S3DiskCache diskCache;
+
+    // Presigner real: firmar no hace llamadas de red
+    private S3Presigner s3Presigner;
+
+    private S3PresignService presignService;
+
+    @BeforeEach
+    void setUp() {
+        s3Presigner = S3Presigner.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("AKID", "SECRETO")))
+                .build();
+        presignService = nuevaInstancia();
+    }
+
+    @AfterEach
+    void tearDown() {
+        s3Presigner.close();
+    }
+
+    @Test
+    void subidaFirmaIdentificadorYTamanoEnLosMetadatos() {
+        when(awsS3Service.generateUniqueFileName("a.pdf")).thenReturn("123_a.pdf");
+
+        PresignedUpload upload = presignService.presignUpload("a.pdf", "application/pdf", 10);
+
+        assertEquals("123_a.pdf", upload.getFileName());
+        assertEquals("PUT", upload.getMethod());
+        assertTrue(upload.getUrl().contains("/123_a.pdf"));
+        assertEquals(upload.getUploadId(), upload.getHeaders().get("x-amz-meta-subida-id"));
+        assertEquals("10", upload.getHeaders().get("x-amz-meta-subida-tamano"));
+        assertEquals("nueva", upload.getHeaders().get("x-amz-meta-subida-tipo"));
+    }
+
+    @Test
+    void confirmacionEnOtraInstanciaSoloNecesitaElHead() {
+        when(awsS3Service.consultarObjeto("123_a.pdf")).thenReturn(head("id-1", 10, "10", "actualizacion"));
+        when(awsS3Service.getFileInfo("123_a.pdf"))
+                .thenReturn(new S3FileInfo("123_a.pdf", "123_a.pdf", 10, Instant.EPOCH, "application/pdf", "url"));
+
+        // La instancia que confirma no es la que firmó la subida
+        UploadResponse response = nuevaInstancia().confirmUpload("123_a.pdf", "id-1");
+
+        assertTrue(response.isSuccess());
+        assertEquals("Archivo actualizado exitosamente", response.getMessage());
+        verify(diskCache).invalidar("123_a.pdf");
+    }
+
+    @Test
+    void objetoDeOtraSubidaOInexistenteNoSeConfirma() {
+        when(awsS3Service.consultarObjeto("123_a.pdf")).thenReturn(head("id-1", 10, "10", "nueva"));
+        when(awsS3Service.consultarObjeto("456_b.pdf")).thenReturn(null);
+
+        assertThrows(S3PresignService.SubidaNoEncontradaException.class,
+                () -> presignService.confirmUpload("123_a.pdf", "id-2"));
+        assertThrows(S3PresignService.SubidaNoEncontradaException.class,
+                () -> presignService.confirmUpload("456_b.pdf", "id-1"));
+    }
+
+    @Test
+    void tamanoDistintoDelFirmadoEsRechazado() {
+        when(awsS3Service.consultarObjeto("123_a.pdf")).thenReturn(head("id-1", 12, "10", "nueva"));
+
+        assertThrows(IllegalArgumentException.class, () -> presignService.confirmUpload("123_a.pdf", "id-1"));
+    }
+
+    @Test
+    void tamanoFueraDeLimitesNoSeFirma() {
+        assertThrows(IllegalArgumentException.class, () -> presignService.presignUpload("a.pdf", null, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> presignService.presignUpload("a.pdf", null, 51L * 1024 * 1024));
+    }
+
+    private S3PresignService nuevaInstancia() {
+        S3PresignService service = new S3PresignService(s3Presigner, awsS3Service, diskCache);
+        ReflectionTestUtils.setField(service, "bucketName", "bucket");
+        return service;
+    }
+
+    private static HeadObjectResponse head(String uploadId, long tamano, String tamanoFirmado, String tipo) {
+        return HeadObjectResponse.builder()
+                .contentLength(tamano)
+                .metadata(Map.of(
+                        S3PresignService.META_SUBIDA, uploadId,
+                        S3PresignService.META_TAMANO, tamanoFirmado,
+                        S3PresignService.META_TIPO, tipo))
+                .build();
+    }
+}
@@ -0,0 +1,95 @@
+package com.tienda.microservicio.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpRange;
+
+class HttpRangeSupportTest {
+
+    private static final String ETAG = "\"abc123\"";
+
+    private static final Instant MODIFICADO = Instant.parse("2024-05-01T10:15:30.250Z");
+
+    @Test
+    void rangoInvalidoOAusenteSeIgnora() {
+        assertTrue(HttpRangeSupport.rangosSolicitados(null, null, ETAG, MODIFICADO).isEmpty());
+        assertTrue(HttpRangeSupport.rangosSolicitados("items=0-10", null, ETAG, MODIFICADO).isEmpty());
+        assertTrue(HttpRangeSupport.rangosSolicitados("bytes=10-5", null, ETAG, MODIFICADO).isEmpty());
+
+        assertEquals(2, HttpRangeSupport.rangosSolicitados("bytes=0-9, -5", null, ETAG, MODIFICADO).size());
+    }
+
+    @Test
+    void ifRangeConEtagFuerteOFechaExacta() {
+        assertTrue(HttpRangeSupport.ifRangeCoincide(ETAG, ETAG, MODIFICADO));
+        assertFalse(HttpRangeSupport.ifRangeCoincide("\"otro\"", ETAG, MODIFICADO));
+        assertFalse(HttpRangeSupport.ifRangeCoincide("W/" + ETAG, "W/" + ETAG, MODIFICADO));
+
+        // Las fechas HTTP no tienen milisegundos
+        assertTrue(HttpRangeSupport.ifRangeCoincide("Wed, 01 May 2024 10:15:30 GMT", ETAG, MODIFICADO));
+        assertFalse(HttpRangeSupport.ifRangeCoincide("Wed, 01 May 2024 10:15:29 GMT", ETAG, MODIFICADO));
+        assertFalse(HttpRangeSupport.ifRangeCoincide("ayer", ETAG, MODIFICADO));
+    }
+
+    @Test
+    void ifRangeQueNoCoincideDevuelveElRecursoCompleto() {
+        assertTrue(HttpRangeSupport.rangosSolicitados("bytes=0-9", "\"otro\"", ETAG, MODIFICADO).isEmpty());
+        assertEquals(1, HttpRangeSupport.rangosSolicitados("bytes=0-9", ETAG, ETAG, MODIFICADO).size());
+    }
+
+    @Test
+    void regionesSolapadasOContiguasSeAgrupan() {
+        List<HttpRangeSupport.Region> regiones = HttpRangeSupport.regiones(
+                HttpRange.parseRanges("bytes=50-59, 0-9, 5-19, 20-29, 90-"), 100);
+
+        assertEquals(List.of(
+                new HttpRangeSupport.Region(0, 29),
+                new HttpRangeSupport.Region(50, 59),
+                new HttpRangeSupport.Region(90, 99)), regiones);
+    }
+
+    @Test
+    void demasiadasRegionesDevuelvenElRecursoCompleto() {
+        String[] rangos = new String[HttpRangeSupport.MAX_REGIONES + 1];
+        Arrays.setAll(rangos, i -> (i * 10) + "-" + (i * 10 + 4));
+
+        assertTrue(HttpRangeSupport.regiones(HttpRange.parseRanges("bytes=" + String.join(",", rangos)), 1000)
+                .isEmpty());
+    }
+
+    @Test
+    void rangoFueraDelRecursoNoEsSatisfacible() {
+        assertThrows(IllegalArgumentException.class,
+                () -> HttpRangeSupport.regiones(HttpRange.parseRanges("bytes=100-200"), 100));
+        assertEquals("bytes */100", HttpRangeSupport.contentRangeNoSatisfacible(100));
+
+        // Los rangos no satisfacibles se descartan si queda alguno válido
+        assertEquals(List.of(new HttpRangeSupport.Region(0, 9)),
+                HttpRangeSupport.regiones(HttpRange.parseRanges("bytes=0-9, 150-"), 100));
+    }
+
+    @Test
+    void multipartConUnaPartePorRegion() throws IOException {
+        byte[] recurso = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        HttpRangeSupport.escribirMultipart(out, "LIMITE", "text/plain", recurso.length,
+                List.of(new HttpRangeSupport.Region(0, 1), new HttpRangeSupport.Region(8, 9)),
+                (inicio, fin, parte) -> parte.write(recurso, (int) inicio, (int) (fin - inicio + 1)));
+
+        assertEquals("\r\n--LIMITE\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-1/10\r\n\r\n01"
+                + "\r\n--LIMITE\r\nContent-Type: text/plain\r\nContent-Range: bytes 8-9/10\r\n\r\n89"
+                + "\r\n--LIMITE--\r\n", out.toString(StandardCharsets.US_ASCII));
+    }
+}